@@ -0,0 +1,221 @@
+package exprParser
+
+import jAADD.AADD
+import java.util.*
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.ForkJoinTask
+import java.util.concurrent.RecursiveTask
+
+/**
+ * @class ConstrNetSolver
+ * Propagates the equations of a symbol table to a fixpoint, in the style of AC-3.
+ * A worklist holds the equations to be revised. Revising an equation
+ * - computes its right side upwards from the variables,
+ * - narrows the left side with it,
+ * - computes the left side downwards through the operators + - * / and unary - to the variables,
+ * - and narrows the variables with the computed values.
+ * A variable is narrowed only if its width is reduced by more than the threshold;
+ * then the equations that read it are put on the worklist again.
+ * Hence, only equations whose variables changed are revised, and the solver stops
+ * as soon as nothing changes by more than the threshold.
+ *
+ * Usage:
+ * <pre>
+ *   p.evalExpr("eqn a == b+c")
+ *   p.evalExpr("eqn b == d*2")
+ *   ConstrNetSolver(p).solve()
+ * </pre>
+ *
+ * Equations that do not share variables, directly or via other equations, form
+ * independent clusters. solveParallel() propagates the clusters concurrently on a fork/join pool;
+ * each cluster writes its variables into an overlay of its thread, and the overlays
+ * are merged into the symbol table in the order of the clusters.
+ *
+ * @param symTab the symbol table with the variables and the equations.
+ * @param eqns the equations; by default all equations defined in the symbol table.
+ */
+class ConstrNetSolver @JvmOverloads constructor(val symTab: SymbolTable,
+                                                val eqns: List<ExprTreeConstrNet> = symTab.eqns) {
+
+    /** Relative reduction of the width below which a variable is not considered as changed. */
+    var threshold = 1e-3
+
+    /** Maximum number of revisions of equations. */
+    var maxSteps = 10000
+
+    /** Number of revisions of equations in the last call of solve(). */
+    var steps = 0
+        private set
+
+    /** Number of narrowings in the last call of solve() that would result in an empty set; they are ignored. */
+    var conflicts = 0
+        private set
+
+    // For each variable, the indexes of the equations that read it.
+    private val readers = HashMap<String, MutableList<Int>>()
+
+    init {
+        for (i in eqns.indices)
+            for (name in symTab.globalsRead(eqns[i]))
+                readers.getOrPut(name) { ArrayList() }.add(i)
+    }
+
+    /**
+     * Propagates the equations until no variable changes by more than the threshold,
+     * or until maxSteps revisions are done.
+     * @return true, if a fixpoint has been reached.
+     */
+    @Throws(ExprError::class)
+    fun solve(): Boolean {
+        steps = 0
+        conflicts = 0
+        ExprTree.symTab = symTab
+        val queued = BooleanArray(eqns.size) { true }
+        val worklist = ArrayDeque<Int>(eqns.indices.toList())
+        while (!worklist.isEmpty()) {
+            if (steps == maxSteps) return false
+            val i = worklist.poll()
+            queued[i] = false
+            steps++
+            for (name in revise(eqns[i]))
+                for (j in readers[name] ?: continue)
+                    if (j != i && !queued[j]) {
+                        queued[j] = true
+                        worklist.add(j)
+                    }
+        }
+        return true
+    }
+
+    /**
+     * Partitions the equations into clusters that do not share variables.
+     * @return the clusters as lists of indexes of the equations, ordered by their first equation.
+     */
+    fun clusters(): List<List<Int>> {
+        // Union-find over the equations; equations reading the same variable are joined.
+        val root = IntArray(eqns.size) { it }
+        fun find(i: Int): Int {
+            var r = i
+            while (root[r] != r) r = root[r]
+            var j = i
+            while (root[j] != r) { val next = root[j]; root[j] = r; j = next }
+            return r
+        }
+        for (list in readers.values)
+            for (k in 1 until list.size) {
+                val a = find(list[0])
+                val b = find(list[k])
+                if (a != b) root[Math.max(a, b)] = Math.min(a, b)
+            }
+        val clusters = LinkedHashMap<Int, MutableList<Int>>()
+        for (i in eqns.indices) clusters.getOrPut(find(i)) { ArrayList() }.add(i)
+        return ArrayList(clusters.values)
+    }
+
+    /**
+     * Propagates the independent clusters of equations concurrently.
+     * The result is the same as of solve(), as the clusters do not share variables.
+     * @return true, if a fixpoint has been reached in all clusters.
+     */
+    @JvmOverloads
+    @Throws(ExprError::class)
+    fun solveParallel(pool: ForkJoinPool = ForkJoinPool.commonPool()): Boolean {
+        ExprTree.symTab = symTab
+        val tasks = clusters().map { cluster -> ClusterTask(cluster.map { eqns[it] }) }
+        if (tasks.size < 2) return solve()
+        pool.invoke(object : RecursiveTask<Unit>() {
+            override fun compute() { ForkJoinTask.invokeAll(tasks) }
+        })
+        steps = 0
+        conflicts = 0
+        var fixpoint = true
+        for (task in tasks) {
+            val result = task.join()
+            for ((name, v) in result.values) symTab.defVar(name, v.value)
+            steps += result.steps
+            conflicts += result.conflicts
+            fixpoint = fixpoint && result.fixpoint
+        }
+        return fixpoint
+    }
+
+    private class ClusterResult(val values: Map<String, ExprTree>, val steps: Int,
+                                val conflicts: Int, val fixpoint: Boolean)
+
+    /** Solves one cluster of equations in an overlay of the symbol table. */
+    private inner class ClusterTask(val cluster: List<ExprTreeConstrNet>) : RecursiveTask<ClusterResult>() {
+        override fun compute(): ClusterResult {
+            val solver = ConstrNetSolver(symTab, cluster)
+            solver.threshold = threshold
+            solver.maxSteps = maxSteps
+            symTab.beginOverlay()
+            val fixpoint = try {
+                solver.solve()
+            } catch (e: ExprError) {
+                symTab.endOverlay()
+                throw e
+            }
+            return ClusterResult(symTab.endOverlay(), solver.steps, solver.conflicts, fixpoint)
+        }
+    }
+
+    /** Revises one equation; returns the names of the variables that changed. */
+    private fun revise(eqn: ExprTreeConstrNet): List<String> {
+        val changed = ArrayList<String>()
+        val rhs = eqn.exprTree
+        rhs.evalUpRec()
+        val name = eqn.leftSide.id
+        val left = symTab.getVar(name).aadd
+        val value = narrow(left, rhs.aadd)
+        if (value != null) {
+            symTab.defVar(name, value)
+            changed.add(name)
+        }
+        rhs.value = value ?: left
+        down(rhs, changed)
+        eqn.value = rhs.value
+        return changed
+    }
+
+    /** Computes the arithmetic operations downwards, and narrows the variables at the leaves. */
+    private fun down(t: ExprTree, changed: MutableList<String>) {
+        if (t is ExprTreeBinOp) {
+            if (t.op != '+'.toInt() && t.op != '-'.toInt() && t.op != '*'.toInt() && t.op != '/'.toInt()) return
+            t.evalDown()
+            down(t.l, changed)
+            down(t.r, changed)
+        } else if (t is ExprTreeNeg) {
+            t.evalDown()
+            down(t.x, changed)
+        } else if (t.javaClass == ExprTree::class.java && t.id != "") {
+            val value = narrow(symTab.getVar(t.id).aadd, t.aadd)
+            if (value != null) {
+                symTab.defVar(t.id, value)
+                changed.add(t.id)
+            }
+        }
+    }
+
+    /**
+     * Narrows the value of a variable by a value computed from an equation.
+     * @return the narrowed value, or null if the width is not reduced by more than the threshold.
+     */
+    private fun narrow(old: AADD, computed: AADD): AADD? {
+        val c = computed.getRange()
+        if (c.isRealsNaN() || c.isReals()) return null
+        if (c.isEmpty()) { conflicts++; return null }
+        val o = old.getRange()
+        val value: AADD
+        if (o.isRealsNaN() || o.isReals()) value = computed
+        else {
+            if (c.max < o.min || c.min > o.max) { conflicts++; return null }
+            if (c.min >= o.min && c.max <= o.max) value = computed
+            else value = old.intersect(computed)
+        }
+        val r = value.getRange()
+        if (r.isEmpty()) { conflicts++; return null }
+        if (o.isRealsNaN() || o.isReals()) return value
+        val oldWidth = o.max - o.min
+        return if (oldWidth - (r.max - r.min) > threshold * oldWidth) value else null
+    }
+}
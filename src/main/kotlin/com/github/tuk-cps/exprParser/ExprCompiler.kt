@@ -0,0 +1,216 @@
+package exprParser
+
+import jAADD.AADD
+import jAADD.BDD
+import jAADD.AffineForm
+import jAADD.DD
+import java.util.*
+
+/** Compiled code of an expression; reads variables from the slots of a frame. */
+internal typealias Code = (Array<DD<*>?>) -> DD<*>
+
+/**
+ * @class CompiledExpr
+ * An expression that is compiled into a tree of closures by ExprParser.compile().
+ * The variables are resolved to slots at compile time; evaluation does neither
+ * look up the symbol table nor copy nodes.
+ * The slots are initialized with the values of the symbol table at compile time;
+ * they are changed by set() or reloaded from the symbol table by load().
+ *
+ * @author Christoph Grimm, Jack D. Martin
+ */
+class CompiledExpr internal constructor(private val code: Code,
+                                        private val symTab: SymbolTable,
+                                        private val slots: Map<String, Int>,
+                                        frameSize: Int,
+                                        private val cached: IntArray) {
+
+    private val frame = arrayOfNulls<DD<*>>(frameSize)
+
+    init { load() }
+
+    /** The names of the variables read by the expression. */
+    val variables: Set<String> get() = slots.keys
+
+    /** Returns the slot of a variable, or -1 if the expression does not read it. */
+    fun slot(name: String): Int = slots[name] ?: -1
+
+    /** Sets the value of the variable in a slot. */
+    operator fun set(slot: Int, value: DD<*>) { frame[slot] = value }
+
+    /** Sets the value of a variable by name; variables not read by the expression are ignored. */
+    operator fun set(name: String, value: DD<*>) {
+        val s = slots[name]
+        if (s != null) frame[s] = value
+    }
+
+    /** Reloads the values of all variables from the symbol table. */
+    fun load() {
+        for ((name, s) in slots) frame[s] = symTab.getVar(name).value
+    }
+
+    /** Evaluates the compiled expression with the values in the slots. */
+    @Throws(ExprError::class)
+    fun eval(): DD<*> {
+        for (s in cached) frame[s] = null
+        return code(frame)
+    }
+
+    @Throws(ExprError::class)
+    fun evalAADD(): AADD = aadd(eval())
+
+    @Throws(ExprError::class)
+    fun evalBDD(): BDD = bdd(eval())
+}
+
+internal fun aadd(v: DD<*>): AADD = if (v is AADD) v else throw ExprError("wrong type. Expected REAL.")
+internal fun bdd(v: DD<*>): BDD = if (v is BDD) v else throw ExprError("wrong type. Expected BOOL.")
+
+/**
+ * @class ExprCompiler
+ * Compiles an expression tree into a tree of closures.
+ * - Literals become constants.
+ * - Global variables become slots of the frame, one per name.
+ * - Calls of user-defined functions are inlined: the arguments are stored in
+ *   slots of the call, and the template of the body reads its parameters from these slots.
+ * - Predefined functions and operators are selected at compile time.
+ * - Nodes shared by ExprOptimizer are computed once per evaluation; the result is cached in a slot.
+ */
+internal class ExprCompiler(private val symTab: SymbolTable) {
+
+    private val slots = LinkedHashMap<String, Int>()
+    private var frameSize = 0
+    private val inlined = ArrayList<ExprTreeFunction>()
+    private val shared = IdentityHashMap<ExprTree, Code>()
+    private val cached = ArrayList<Int>()
+
+    fun compile(t: ExprTree): CompiledExpr {
+        val code = compile(t, IntArray(0))
+        return CompiledExpr(code, symTab, slots, frameSize, cached.toIntArray())
+    }
+
+    /**
+     * Compiles a node.
+     * @param params maps the parameters of the enclosing function body to slots.
+     */
+    private fun compile(t: ExprTree, params: IntArray): Code {
+        if (t.extraParents != null && t.javaClass != ExprTree::class.java) {
+            shared[t]?.let { return it }
+            val s = frameSize++
+            cached.add(s)
+            val code = compileNode(t, params)
+            val c: Code = { f -> f[s] ?: code(f).also { f[s] = it } }
+            shared[t] = c
+            return c
+        }
+        return compileNode(t, params)
+    }
+
+    private fun compileNode(t: ExprTree, params: IntArray): Code {
+        return when (t) {
+            is ExprTreeBinOp -> scalarOp(t, params) ?: binOp(t.op, compile(t.l, params), compile(t.r, params))
+            is ExprTreeNeg -> { val x = compile(t.x, params); { f -> aadd(x(f)).negate() } }
+            is ExprTreeConstrNet -> compile(t.exprTree, params)
+            is ExprTreeFunction -> function(t, params)
+            is ExprTreeParam -> {
+                if (t.slot >= params.size) throw ExprError("parameter ${t.id} outside of function call")
+                val s = params[t.slot]
+                return { f -> f[s]!! }
+            }
+            else -> leaf(t)
+        }
+    }
+
+    private fun leaf(t: ExprTree): Code {
+        if (t.javaClass != ExprTree::class.java) throw ExprError("cannot compile ${t.javaClass.simpleName}")
+        if (t.id == "") {
+            val v = t.value
+            return { _ -> v }
+        }
+        val s = slots.getOrPut(t.id) { frameSize++ }
+        return { f -> f[s]!! }
+    }
+
+    private fun binOp(op: Int, l: Code, r: Code): Code = when (op) {
+        '+'.toInt() -> { f -> aadd(l(f)) + aadd(r(f)) }
+        '-'.toInt() -> { f -> aadd(l(f)) - aadd(r(f)) }
+        '*'.toInt() -> { f -> aadd(l(f)) * aadd(r(f)) }
+        '/'.toInt() -> { f -> aadd(l(f)) / aadd(r(f)) }
+        '>'.toInt() -> { f -> aadd(l(f)) gt aadd(r(f)) }
+        '<'.toInt() -> { f -> aadd(l(f)) lt aadd(r(f)) }
+        ExprScanner.GE -> { f -> aadd(l(f)) ge aadd(r(f)) }
+        ExprScanner.LE -> { f -> aadd(l(f)) le aadd(r(f)) }
+        '&'.toInt() -> { f -> bdd(l(f)) and bdd(r(f)) }
+        '|'.toInt() -> { f -> bdd(l(f)) or bdd(r(f)) }
+        '='.toInt() -> throw ExprError("Equality of two AADD is not supported.")
+        else -> throw ExprError("Operation " + op.toChar() + " resp. " + op + " not supported on AADD.")
+    }
+
+    /** Compiles an operation with a number literal as right operand to a scalar kernel of AADD, if there is one. */
+    private fun scalarOp(t: ExprTreeBinOp, params: IntArray): Code? {
+        val c = t.r.literal ?: return null
+        val op: (AADD) -> DD<*> = when (t.op) {
+            '+'.toInt() -> { a -> a.plusScalar(c) }
+            '-'.toInt() -> { a -> a.plusScalar(-c) }
+            '*'.toInt() -> { a -> a.timesScalar(c) }
+            '>'.toInt() -> { a -> a gt c }
+            '<'.toInt() -> { a -> a lt c }
+            ExprScanner.GE -> { a -> a ge c }
+            ExprScanner.LE -> { a -> a le c }
+            else -> return null
+        }
+        val l = compile(t.l, params)
+        return { f -> op(aadd(l(f))) }
+    }
+
+    private fun function(t: ExprTreeFunction, params: IntArray): Code {
+        val args = t.param.map { compile(it, params) }
+        fun arg(i: Int): Code = if (i < args.size) args[i] else throw ExprError("not enough parameters")
+        return when (t) {
+            is ExprTreeNot -> { val x = arg(0); { f -> bdd(x(f)).not() } }
+            is ExprTreeSqrt -> { val x = arg(0); { f -> aadd(x(f)).sqrt() } }
+            is ExprTreeExp -> { val x = arg(0); { f -> aadd(x(f)).exp() } }
+            is ExprTreeLog -> { val x = arg(0); { f -> aadd(x(f)).log() } }
+            is ExprTreeRange -> {
+                if (args.size != 2) throw ExprError("range expects 2 parameters")
+                val l = arg(0); val r = arg(1)
+                return { f -> AADD.range(aadd(l(f)).value!!.min, aadd(r(f)).value!!.max, -1) }
+            }
+            is ExprTreeAaf -> {
+                if (args.size != 3) throw ExprError("aaf requires 3 parameters: min, max, symbol no.")
+                val l = arg(0); val r = arg(1); val k = arg(2)
+                return { f -> AADD.leaf(AffineForm(aadd(l(f)).value!!.min, aadd(r(f)).value!!.max,
+                                                   Math.round(aadd(k(f)).value!!.x0).toInt())) }
+            }
+            is ExprTreeITE -> {
+                val i = arg(0); val th = arg(1); val el = arg(2)
+                return { f ->
+                    val c = bdd(i(f))
+                    if (c === BDD.True) th(f)
+                    else if (c === BDD.False) el(f)
+                    else {
+                        val tv = th(f)
+                        val r: DD<*> = if (tv is BDD) c.ite(tv, bdd(el(f))) else c.ite(aadd(tv), aadd(el(f)))
+                        r
+                    }
+                }
+            }
+            else -> userFunction(t, args)
+        }
+    }
+
+    /** Inlines the body of a user-defined function; the arguments are evaluated once per call. */
+    private fun userFunction(t: ExprTreeFunction, args: List<Code>): Code {
+        val body = t.ast ?: throw ExprError("function ${t.id} not defined")
+        if (inlined.any { it.id == t.id }) throw ExprError("recursive function ${t.id} cannot be compiled")
+        val argSlots = IntArray(args.size) { frameSize++ }
+        inlined.add(t)
+        val code = compile(body, argSlots)
+        inlined.removeAt(inlined.size - 1)
+        val argCodes = args.toTypedArray()
+        return { f ->
+            for (i in argCodes.indices) f[argSlots[i]] = argCodes[i](f)
+            code(f)
+        }
+    }
+}
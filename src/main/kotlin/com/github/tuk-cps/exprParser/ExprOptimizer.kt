@@ -0,0 +1,178 @@
+package exprParser
+
+import jAADD.AADD
+import java.util.*
+
+/**
+ * @class ExprOptimizer
+ * Constant folding: see fold(); it is applied by the parser when a node is created.
+ *
+ * Common subexpression elimination: structurally identical subtrees of an expression
+ * tree are replaced by one shared node; the tree becomes a directed acyclic graph.
+ * A shared node has a parent and further parents in extraParents.
+ * With ExprTree.evalUpIncr, a shared node is computed only once per evaluation,
+ * as it is clean when reached from its further parents.
+ *
+ * Calls of range and aaf, and of user-defined functions that call them, are not shared,
+ * as each call creates a new noise symbol. Equations are not optimized, as the
+ * propagation downwards writes into the nodes on each path.
+ */
+internal class ExprOptimizer {
+
+    /** Number of operations and calls with more than one parent after the last cse(); leaves are not counted. */
+    var sharedNodes = 0
+        private set
+
+    private data class Key(val kind: Any, val id: String, val children: List<Any>)
+
+    private val table = HashMap<Key, ExprTree>()
+
+    /** Eliminates common subexpressions and returns the root of the resulting graph. */
+    fun cse(root: ExprTree): ExprTree {
+        if (root is ExprTreeConstrNet) return root
+        table.clear()
+        val r = canonical(root)
+        link(r)
+        return r
+    }
+
+    /** Returns the first node that is structurally identical to t; childs first. */
+    private fun canonical(t: ExprTree): ExprTree {
+        val key = when (t) {
+            is ExprTreeBinOp -> {
+                t.l = canonical(t.l)
+                t.r = canonical(t.r)
+                Key(t.op, "", listOf(t.l, t.r))
+            }
+            is ExprTreeNeg -> {
+                t.x = canonical(t.x)
+                Key("-", "", listOf(t.x))
+            }
+            is ExprTreeFunction -> {
+                for (i in t.param.indices) t.param[i] = canonical(t.param[i])
+                if (createsSymbols(t, HashSet())) return t
+                Key(t.javaClass, t.id, ArrayList<Any>(t.param))
+            }
+            else -> {
+                if (t.javaClass != ExprTree::class.java) return t
+                if (t.id != "") Key("var", t.id, emptyList())
+                else {
+                    val v = t.value
+                    if (v !is AADD || !v.isLeaf) return t
+                    Key("#", "", listOf(v.value!!.x0))
+                }
+            }
+        }
+        return table.getOrPut(key) { t }
+    }
+
+    /** True, if the call creates new noise symbols. */
+    private fun createsSymbols(f: ExprTreeFunction, visited: HashSet<String>): Boolean {
+        if (f is ExprTreeRange || f is ExprTreeAaf) return true
+        val body = f.ast ?: return false
+        if (!visited.add(f.id)) return false
+        fun scan(t: ExprTree): Boolean = when (t) {
+            is ExprTreeBinOp -> scan(t.l) || scan(t.r)
+            is ExprTreeNeg -> scan(t.x)
+            is ExprTreeFunction -> t.param.any { scan(it) } || createsSymbols(t, visited)
+            else -> false
+        }
+        return scan(body)
+    }
+
+    private fun childs(t: ExprTree): List<ExprTree> = when (t) {
+        is ExprTreeBinOp -> listOf(t.l, t.r)
+        is ExprTreeNeg -> listOf(t.x)
+        is ExprTreeFunction -> t.param
+        else -> emptyList()
+    }
+
+    /** Sets the parent pointers of the graph. */
+    private fun link(root: ExprTree) {
+        val nodes = ArrayList<ExprTree>()
+        val visited = Collections.newSetFromMap(IdentityHashMap<ExprTree, Boolean>())
+        val work = ArrayList<ExprTree>()
+        work.add(root)
+        while (work.isNotEmpty()) {
+            val n = work.removeAt(work.size - 1)
+            if (!visited.add(n)) continue
+            nodes.add(n)
+            work.addAll(childs(n))
+        }
+        for (n in nodes) {
+            n.parent = null
+            n.extraParents = null
+        }
+        for (n in nodes)
+            for (c in childs(n)) {
+                if (c.parent == null) c.parent = n
+                else {
+                    if (c.extraParents == null) c.extraParents = ArrayList()
+                    c.extraParents!!.add(n)
+                }
+            }
+        sharedNodes = nodes.count { it.extraParents != null && it.javaClass != ExprTree::class.java }
+    }
+
+    companion object {
+        /**
+         * Simplifies a node whose childs are already simplified:
+         * - operations + - * / and sqrt, exp, log on literals are computed,
+         * - x+0, 0+x, x-0, x*1, 1*x, x/1 are replaced by x, and 0-x by -x,
+         * - x+(-y) is replaced by x-y, and x-(-y) by x+y,
+         * - -(-x) is replaced by x, and the negation of a literal by a literal.
+         */
+        @Throws(ExprError::class)
+        fun fold(t: ExprTree): ExprTree {
+            when (t) {
+                is ExprTreeBinOp -> {
+                    val l = t.l
+                    val r = t.r
+                    when (t.op) {
+                        '+'.toInt(), '-'.toInt(), '*'.toInt(), '/'.toInt() -> { }
+                        else -> return t
+                    }
+                    if (isLiteral(l) && isLiteral(r)) return computed(t)
+                    when (t.op) {
+                        '+'.toInt() -> { if (isScalar(l, 0.0)) return detach(r); if (isScalar(r, 0.0)) return detach(l) }
+                        '-'.toInt() -> { if (isScalar(r, 0.0)) return detach(l); if (isScalar(l, 0.0)) return fold(ExprTreeNeg(r)) }
+                        '*'.toInt() -> { if (isScalar(l, 1.0)) return detach(r); if (isScalar(r, 1.0)) return detach(l) }
+                        '/'.toInt() -> { if (isScalar(r, 1.0)) return detach(l) }
+                    }
+                    if (r is ExprTreeNeg && t.op == '+'.toInt()) return fold(ExprTreeBinOp(l, '-'.toInt(), r.x))
+                    if (r is ExprTreeNeg && t.op == '-'.toInt()) return fold(ExprTreeBinOp(l, '+'.toInt(), r.x))
+                }
+                is ExprTreeNeg -> {
+                    val x = t.x
+                    if (isLiteral(x)) return computed(t)
+                    if (x is ExprTreeNeg) return detach(x.x)
+                }
+                is ExprTreeFunction ->
+                    if ((t is ExprTreeSqrt || t is ExprTreeExp || t is ExprTreeLog)
+                            && t.param.size == 1 && isLiteral(t.param[0])) return computed(t)
+            }
+            return t
+        }
+
+        private fun isLiteral(t: ExprTree): Boolean {
+            val v = t.value
+            return t.javaClass == ExprTree::class.java && t.id == "" && v is AADD && v.isLeaf
+        }
+
+        private fun isScalar(t: ExprTree, c: Double): Boolean {
+            if (!isLiteral(t)) return false
+            val af = (t.value as AADD).value!!
+            return af.isScalar() && af.x0 == c
+        }
+
+        private fun computed(t: ExprTree): ExprTree {
+            t.evalUp()
+            return ExprTree(t.value, "")
+        }
+
+        private fun detach(t: ExprTree): ExprTree {
+            t.parent = null
+            return t
+        }
+    }
+}
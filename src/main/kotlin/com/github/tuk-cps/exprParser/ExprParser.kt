@@ -4,6 +4,7 @@ import jAADD.AADD
 import jAADD.AADD.Companion.scalar
 import jAADD.BDD
 import jAADD.DD
+import java.io.File
 import java.util.*
 
 
@@ -48,6 +49,8 @@ import java.util.*
  *
  * Params  :- "(" CExpr ("," CExpr)* ")"
  *
+ * Script  :- ( [Stmt] EOL )* [Stmt] EOF
+ *
  * }
  * </pre>
  * Examples are in the unit test.
@@ -56,11 +59,27 @@ class ExprParser(): ExprScanner() {
 
     var AST: ExprTree? = null     // holds the attributed syntax tree
         get()                        { return field}
-        internal set(ast: ExprTree?) { field = ast}
+        internal set(ast: ExprTree?) { field = ast; if (ast != null) addReaders(ast) }
+
+    /**
+     * If true, operations on literals are computed and identity operations removed
+     * while parsing; see ExprOptimizer.fold.
+     */
+    var constFold = true
+
+    /**
+     * If true, common subexpressions of the parsed expressions are shared,
+     * and computed only once per evaluation; see ExprOptimizer.
+     */
+    var cse = false
+
+    /** Number of shared operations and calls in the AST after the last parse with cse enabled. */
+    var sharedNodes = 0
+        private set
 
     /** Sets an expression string, parses it, but does not evaluate it. */
     var expr: String = ""
-        set(value) {super.setup(value); AST=Stmt()}
+        set(value) {super.setup(value); AST=optimize(Stmt())}
 
     /**
      * Evaluates a given String with the defined variables.
@@ -92,12 +111,13 @@ class ExprParser(): ExprScanner() {
 
     /**
      * Re-evaluates the expression with the defined variables.
+     * Only the nodes that read variables changed since the last evaluation are re-computed.
      * It returns the result from the expression tree as an AADD.
      */
     @Throws(ExprError::class)
     fun evalAADD(): AADD {
         if (AST == null) throw ExprError("Expr not evaluated")
-        AST?.evalUpRec()
+        AST?.evalUpIncr()
         return AST!!.aadd
     }
 
@@ -107,11 +127,21 @@ class ExprParser(): ExprScanner() {
     @Throws(ParseError::class, ExprError::class)
     fun evalBDD(): BDD {
         if (AST == null) throw ExprError("Expr not evaluated")
-        AST!!.evalUpRec()
+        AST!!.evalUpIncr()
         return AST!!.bdd
     }
 
 
+    /**
+     * Compiles the parsed expression into a tree of closures.
+     * For expressions that are evaluated very often; see CompiledExpr.
+     */
+    @Throws(ExprError::class)
+    fun compile(): CompiledExpr {
+        if (AST == null) throw ExprError("Expr not parsed")
+        return ExprCompiler(this).compile(AST!!)
+    }
+
     /**
      * Parses and evaluates a given String with the defined variables.
      * @param expr_str A string to be parsed.
@@ -120,12 +150,77 @@ class ExprParser(): ExprScanner() {
     @Throws(ParseError::class, ExprError::class)
     fun evalExpr(expr_str: String): ExprTree {
         super.setup(expr_str)
-        AST = Stmt()
-        AST?.evalUpRec()
+        AST = optimize(Stmt())
+        AST?.evalUpIncr()
         return AST!!
     }
 
 
+    @Throws(ExprError::class)
+    private fun fold(t: ExprTree): ExprTree = if (constFold) ExprOptimizer.fold(t) else t
+
+    private fun optimize(t: ExprTree): ExprTree {
+        if (!cse) return t
+        val o = ExprOptimizer()
+        val r = o.cse(t)
+        sharedNodes = o.sharedNodes
+        return r
+    }
+
+    /**
+     * Parses a script with one statement per line; comments start with "//".
+     * Functions and equations are defined while parsing; the var statements
+     * and expressions are evaluated by ExprScript.eval().
+     * @param script the text of the script.
+     * @return the parsed script.
+     * @throws ParseError with the line number of the error.
+     */
+    @Throws(ParseError::class, ExprError::class)
+    fun parseScript(script: String): ExprScript {
+        super.setupScript(script)
+        val statements = ArrayList<ExprScript.Statement>()
+        while (token != EOF) {
+            if (token == EOL) { nextToken(); continue }
+            val line = lineno
+            try {
+                statements.add(ScriptStmt(line))
+                if (token != EOL && token != EOF) throw ParseError("expected end of line")
+            } catch (e: ParseError) {
+                throw ParseError("line $line: " + e.message!!.removePrefix("Parse Error: "))
+            }
+        }
+        return ExprScript(this, statements)
+    }
+
+    /** Reads a script file at once, and parses it; see parseScript(String). */
+    @Throws(ParseError::class, ExprError::class)
+    fun parseScript(file: File): ExprScript = parseScript(file.readText())
+
+    /** Parses and evaluates a script file; returns the evaluated script. */
+    @Throws(ParseError::class, ExprError::class)
+    fun evalScript(file: File): ExprScript {
+        val s = parseScript(file)
+        s.eval()
+        return s
+    }
+
+    /** A statement of a script; var statements are not evaluated. */
+    @Throws(ParseError::class, ExprError::class)
+    private fun ScriptStmt(line: Int): ExprScript.Statement {
+        return when (token) {
+            VAR -> {
+                nextToken()
+                val n = sval!!
+                nextToken(ID)
+                nextToken(ASS)
+                ExprScript.Statement(line, ExprScript.Kind.VAR, n, CExpr())
+            }
+            FUN -> ExprScript.Statement(line, ExprScript.Kind.FUN, null, Stmt())
+            EQN -> ExprScript.Statement(line, ExprScript.Kind.EQN, null, Stmt())
+            else -> ExprScript.Statement(line, ExprScript.Kind.EXPR, null, Stmt())
+        }
+    }
+
     /**
      * stmt :-  VAR NAME ":=" CExpr
      *        | FUN NAME Params "=" CExpr
@@ -164,13 +259,15 @@ class ExprParser(): ExprScanner() {
                 nextToken(ID)
                 nextToken(EE)
                 t = CExpr()
-                return ExprTreeConstrNet(getVar(n), t)
+                val eqn = ExprTreeConstrNet(getVar(n), t)
+                defEqn(eqn)
+                return eqn
             }
             else -> {
                 t = CExpr()
             }
         }
-        if (token != EOL) throw ParseError("expected Statement")
+        if (token != EOL && token != EOF) throw ParseError("expected Statement")
         return t
     }
 
@@ -183,7 +280,7 @@ class ExprParser(): ExprScanner() {
         if (nextTokenIs('>'.toInt(), '<'.toInt(), '='.toInt(), GE, LE)) {
             val op = lastToken
             val t2 = Sum()
-            result = ExprTreeBinOp(result, op, t2) // getting an error here
+            result = fold(ExprTreeBinOp(result, op, t2))
         }
         return result
     }
@@ -197,7 +294,7 @@ class ExprParser(): ExprScanner() {
         while (nextTokenIs('+'.toInt(), '-'.toInt(), '|'.toInt())) {
             val op = lastToken
             val t2 = Product()
-            result = ExprTreeBinOp(result, op, t2)
+            result = fold(ExprTreeBinOp(result, op, t2))
         }
         return result
     }
@@ -209,7 +306,7 @@ class ExprParser(): ExprScanner() {
         while (nextTokenIs('*'.toInt(), '/'.toInt(), '&'.toInt())) {
             val op = lastToken
             val f2 = Value()
-            result = ExprTreeBinOp(result, op, f2)
+            result = fold(ExprTreeBinOp(result, op, f2))
         }
         return result
     }
@@ -258,10 +355,10 @@ class ExprParser(): ExprScanner() {
                 val n = sval!!
                 nextToken()
                 val params = Params()
-                value = if (params==null) getVar(n) else getFuncCall(n, params)
+                value = if (params==null) getVar(n) else fold(getFuncCall(n, params))
             }
             else -> throw ParseError("expect value, but read: " + token.toChar() + " resp. " + token)
         }
-        return if (neg) ExprTreeBinOp(ExprTree(scalar(0.0), "0.0"), '-'.toInt(), value) else value
+        return if (neg) fold(ExprTreeNeg(value)) else value
     }
 }
\ No newline at end of file
@@ -1,80 +1,164 @@
 package exprParser
 
-import java.io.IOException
-import java.io.Reader
-import java.io.StreamTokenizer
-import java.io.StringReader
-
 /**
  * @class ExprScanner
  * The scanner for the AADD Expressions.
- * It is based on the Java standard class StreamTokenizer.
- * It is configured to read from a string, not a file.
+ * It reads the characters of a string in place, without copying or buffering;
+ * the lexical grammar is the one of a java.io.StreamTokenizer with:
+ * - word chars a-z, A-Z, 0-9, '.', and all chars >= 256; words are converted to lower case,
+ * - numbers starting with 0-9 or '.', without sign and exponent,
+ * - white space ' ' and tab; all other chars are ordinary.
+ * In script mode, it reads a sequence of statements, separated by line ends;
+ * comments start with "//". The end of a line is EOL, the end of the script is EOF.
  */
 open class ExprScanner: SymbolTable() {
-    private var strtok: StreamTokenizer? = null
+    private var src: CharSequence = ""
+    private var pos = 0
+    private var line = 1
+    private var script = false
+    private var pushedBack = false
+    private var ttype = TT_EOF  // raw token as returned by rawToken()
+    private var rawNval = 0.0
+    private var rawSval: String? = null
+
     protected var token = 0
     protected var nval = 0.0
     protected var sval: String? = null
 
-    protected fun setup(expr_string: String) {
-        val r: Reader = StringReader(expr_string)
-        strtok = StreamTokenizer(r)
-        strtok!!.resetSyntax()
-        strtok!!.lowerCaseMode(true)
-        strtok!!.parseNumbers()
-        strtok!!.wordChars('a'.toInt(), 'z'.toInt())
-        strtok!!.wordChars('A'.toInt(), 'Z'.toInt())
-        strtok!!.wordChars('0'.toInt(), '9'.toInt())
-        strtok!!.wordChars('.'.toInt(), '.'.toInt())
-        strtok!!.whitespaceChars(' '.toInt(), ' '.toInt())
-        strtok!!.whitespaceChars('\t'.toInt(), '\t'.toInt())
-        strtok!!.slashSlashComments(false)
-        strtok!!.slashStarComments(false)
-        strtok!!.ordinaryChar('-'.toInt()) // otherwise part of wordChars!
+    /** The line number of the current token. */
+    protected val lineno: Int get() = line
+
+    protected fun setup(expr_string: String) = setup(expr_string, false)
+
+    /** Sets up the scanner for a script with one statement per line. */
+    protected fun setupScript(script_string: String) = setup(script_string, true)
+
+    private fun setup(expr_string: String, script: Boolean) {
+        src = expr_string
+        pos = 0
+        line = 1
+        pushedBack = false
+        this.script = script
         ExprTree.symTab = this
         nextToken()
     }
 
+    private fun read(): Int = if (pos < src.length) src[pos++].toInt() else -1
+
+    private fun isWhitespace(c: Int) =
+            c == ' '.toInt() || c == '\t'.toInt() || (script && (c == '\n'.toInt() || c == '\r'.toInt()))
+
+    private fun isDigit(c: Int) = (c >= '0'.toInt() && c <= '9'.toInt()) || c == '.'.toInt()
+
+    private fun isWordChar(c: Int) =
+            (c >= 'a'.toInt() && c <= 'z'.toInt()) || (c >= 'A'.toInt() && c <= 'Z'.toInt()) || isDigit(c) || c >= 256
+
+    /** Reads the next raw token: TT_EOF, TT_EOL, TT_NUMBER, TT_WORD, or an ordinary char. */
+    private fun rawToken(): Int {
+        if (pushedBack) {
+            pushedBack = false
+            return ttype
+        }
+        rawSval = null
+        var c = read()
+        while (c >= 0 && isWhitespace(c)) {
+            if (c == '\r'.toInt()) {
+                line++
+                if (pos < src.length && src[pos] == '\n') pos++
+                if (script) { ttype = TT_EOL; return ttype }
+            } else if (c == '\n'.toInt()) {
+                line++
+                if (script) { ttype = TT_EOL; return ttype }
+            }
+            c = read()
+        }
+        if (c < 0) { ttype = TT_EOF; return ttype }
+
+        if (isDigit(c)) {
+            // Same algorithm as StreamTokenizer, for the same values.
+            var v = 0.0
+            var decexp = 0
+            var seendot = 0
+            while (true) {
+                if (c == '.'.toInt() && seendot == 0) seendot = 1
+                else if (c >= '0'.toInt() && c <= '9'.toInt()) {
+                    v = v * 10 + (c - '0'.toInt())
+                    decexp += seendot
+                } else break
+                c = read()
+            }
+            if (c >= 0) pos--
+            if (decexp != 0) {
+                var denom = 10.0
+                decexp--
+                while (decexp > 0) { denom *= 10; decexp-- }
+                v /= denom
+            }
+            rawNval = v
+            ttype = TT_NUMBER
+            return ttype
+        }
+
+        if (isWordChar(c)) {
+            val start = pos - 1
+            var upper = false
+            while (c >= 0 && isWordChar(c)) {
+                if (c >= 'A'.toInt() && c <= 'Z'.toInt() || c >= 256) upper = true
+                c = read()
+            }
+            if (c >= 0) pos--
+            rawSval = if (upper) lowerCase(start, pos) else src.substring(start, pos)
+            ttype = TT_WORD
+            return ttype
+        }
+
+        if (c == '/'.toInt() && script && pos < src.length && src[pos] == '/') {
+            while (pos < src.length && src[pos] != '\n' && src[pos] != '\r') pos++
+            return rawToken()
+        }
+        ttype = c
+        return ttype
+    }
+
+    private fun lowerCase(start: Int, end: Int): String {
+        val b = StringBuilder(end - start)
+        for (i in start until end) b.append(Character.toLowerCase(src[i]))
+        return b.toString()
+    }
+
+    private fun pushBack() { pushedBack = true }
+
     @Throws(ParseError::class)
     protected fun nextToken(): Int {
-        try {
-            token = strtok!!.nextToken()
-            when (token) {
-                StreamTokenizer.TT_EOF, StreamTokenizer.TT_EOL -> token = EOL
-                StreamTokenizer.TT_NUMBER -> {
-                    // we don't represent negative numbers here. Instead, we split it in
-                    // one token '-' and one VALUE token with the positive value.
-                    nval = strtok!!.nval
-                    token = DOUBLE
-                    if (nval < 0) {
-                        token = '-'.toInt()
-                        strtok!!.nval = -nval
-                        strtok!!.pushBack()
-                    }
-                }
-                StreamTokenizer.TT_WORD -> {
-                    sval = strtok!!.sval
-                    token = ID
-                    when (sval) {
-                        "var" -> token = VAR
-                        "val" -> token = VAL
-                        "fun" -> token = FUN
-                        "eqn" -> token = EQN
-                    }
+        token = rawToken()
+        when (token) {
+            TT_EOF -> token = if (script) EOF else EOL
+            TT_EOL -> token = EOL
+            TT_NUMBER -> {
+                // we don't represent negative numbers here. Instead, numbers have no sign;
+                // a '-' is a token of its own.
+                nval = rawNval
+                token = DOUBLE
+            }
+            TT_WORD -> {
+                sval = rawSval
+                token = ID
+                when (sval) {
+                    "var" -> token = VAR
+                    "val" -> token = VAL
+                    "fun" -> token = FUN
+                    "eqn" -> token = EQN
                 }
-                '('.toInt(), ')'.toInt() , '+'.toInt(), '-'.toInt(), '*'.toInt(), '/'.toInt(), '&'.toInt(), '|'.toInt() -> { }
-                ':'.toInt() -> if (strtok!!.nextToken() == '='.toInt()) token = ASS
-                '='.toInt() -> if (strtok!!.nextToken() == '='.toInt()) token = EE else strtok!!.pushBack()
-                ','.toInt() -> { }
-                '>'.toInt() -> if (strtok!!.nextToken() == '='.toInt()) token = GE else strtok!!.pushBack()
-                '<'.toInt() -> if (strtok!!.nextToken() == '='.toInt()) token = LE else strtok!!.pushBack()
-                else -> throw ParseError("unsupported token:$this")
             }
-            // System.out.println("  Read token: " + this + ", "); // useful for debugging:
-        } catch (e: IOException) {
-            throw ParseError("unsupported symbol in expression string: " + token.toChar())
+            '('.toInt(), ')'.toInt() , '+'.toInt(), '-'.toInt(), '*'.toInt(), '/'.toInt(), '&'.toInt(), '|'.toInt() -> { }
+            ':'.toInt() -> if (rawToken() == '='.toInt()) token = ASS
+            '='.toInt() -> if (rawToken() == '='.toInt()) token = EE else pushBack()
+            ','.toInt() -> { }
+            '>'.toInt() -> if (rawToken() == '='.toInt()) token = GE else pushBack()
+            '<'.toInt() -> if (rawToken() == '='.toInt()) token = LE else pushBack()
+            else -> throw ParseError("unsupported token:$this")
         }
+        // System.out.println("  Read token: " + this + ", "); // useful for debugging:
         return token
     }
 
@@ -116,8 +200,8 @@ open class ExprScanner: SymbolTable() {
      */
     override fun toString(): String {
         return when (token) {
-            DOUBLE -> "DOUBLE: " + strtok!!.nval
-            ID     -> "ID: " + strtok!!.sval
+            DOUBLE -> "DOUBLE: " + rawNval
+            ID     -> "ID: " + rawSval
             GE     -> ">="
             LE     -> "<="
             ASS    -> ":="
@@ -127,6 +211,7 @@ open class ExprScanner: SymbolTable() {
             FUN    -> "FUN"
             EQN    -> "EQN"
             EOL    -> "<EOL/EOF>"
+            EOF    -> "<EOF>"
             else   -> "" + token.toChar()
         }
     }
@@ -143,5 +228,12 @@ open class ExprScanner: SymbolTable() {
         const val GE = -110
         const val LE = -111
         const val EOL = -112
+        const val EOF = -113
+
+        // Raw tokens; the same values as in StreamTokenizer.
+        private const val TT_EOF = -1
+        private const val TT_EOL = 10 // '\n'
+        private const val TT_NUMBER = -2
+        private const val TT_WORD = -3
     }
 }
\ No newline at end of file
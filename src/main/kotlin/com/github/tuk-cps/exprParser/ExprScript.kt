@@ -0,0 +1,91 @@
+package exprParser
+
+import jAADD.DD
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.ForkJoinTask
+import java.util.concurrent.RecursiveAction
+
+/**
+ * @class ExprScript
+ * A script of statements, parsed at once by ExprParser.parseScript.
+ * Functions and equations are defined while parsing; var statements and expressions are
+ * evaluated by eval(). The statements are ordered in levels by their dependencies:
+ * a statement depends on the last var statement before it that defines a variable it reads,
+ * and a var statement in addition on the statements before it that read or define the same variable.
+ * The statements of a level are independent; they are evaluated in parallel,
+ * and their values are defined in the symbol table in the order of the script.
+ * Hence, the result is the same as if the statements were evaluated one by one.
+ *
+ * @author Christoph Grimm, Jack D. Martin
+ */
+class ExprScript internal constructor(private val symTab: SymbolTable, val statements: List<Statement>) {
+
+    enum class Kind { VAR, FUN, EQN, EXPR }
+
+    /** A statement of the script with its line number and, for var statements, the name of the variable. */
+    class Statement internal constructor(val line: Int, val kind: Kind, val name: String?, val tree: ExprTree) {
+        /** The value after evaluation; for var statements and expressions. */
+        val value: DD<*>? get() = if (kind == Kind.VAR || kind == Kind.EXPR) tree.value else null
+
+        override fun toString() = "$line: $kind ${name ?: ""} $tree"
+    }
+
+    /** The indexes of the statements that are evaluated, grouped by levels of dependencies. */
+    val levels: List<List<Int>>
+
+    init {
+        val level = IntArray(statements.size)
+        val lastWriter = HashMap<String, Int>()
+        val readers = HashMap<String, MutableList<Int>>() // since the last writer
+        val byLevel = ArrayList<MutableList<Int>>()
+        for (i in statements.indices) {
+            val s = statements[i]
+            if (s.kind != Kind.VAR && s.kind != Kind.EXPR) continue
+            var l = 0
+            val reads = symTab.globalsRead(s.tree)
+            for (n in reads) lastWriter[n]?.let { l = Math.max(l, level[it] + 1) }
+            if (s.kind == Kind.VAR) {
+                val n = s.name!!
+                lastWriter[n]?.let { l = Math.max(l, level[it] + 1) }
+                readers[n]?.forEach { if (it != i) l = Math.max(l, level[it] + 1) }
+            }
+            level[i] = l
+            while (byLevel.size <= l) byLevel.add(ArrayList())
+            byLevel[l].add(i)
+            for (n in reads) readers.getOrPut(n) { ArrayList() }.add(i)
+            if (s.kind == Kind.VAR) {
+                lastWriter[s.name!!] = i
+                readers.remove(s.name)
+            }
+        }
+        levels = byLevel
+    }
+
+    /**
+     * Evaluates the var statements and expressions, level by level.
+     * Statements of a level are evaluated in parallel on the pool.
+     */
+    @JvmOverloads
+    @Throws(ExprError::class)
+    fun eval(pool: ForkJoinPool = ForkJoinPool.commonPool()) {
+        ExprTree.symTab = symTab
+        for (level in levels) {
+            if (level.size == 1) {
+                statements[level[0]].tree.evalUpRec()
+            } else {
+                val tasks = level.map { EvalTask(statements[it].tree) }
+                pool.invoke(object : RecursiveAction() {
+                    override fun compute() { ForkJoinTask.invokeAll(tasks) }
+                })
+            }
+            for (i in level) {
+                val s = statements[i]
+                if (s.kind == Kind.VAR) symTab.defVar(s.name!!, s.tree)
+            }
+        }
+    }
+
+    private class EvalTask(val tree: ExprTree) : RecursiveAction() {
+        override fun compute() = tree.evalUpRec()
+    }
+}
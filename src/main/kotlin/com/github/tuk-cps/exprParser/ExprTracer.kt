@@ -0,0 +1,75 @@
+package exprParser
+
+import java.io.Writer
+
+/**
+ * @interface ExprTracer
+ * Observes the evaluation of expression trees.
+ * It is called after each node has been computed upwards or downwards,
+ * with the time spent in the node itself, not in its childs. Exceptions are
+ * calls of user-defined functions, whose time includes the evaluation of the body,
+ * and the solve of a constraint network (SOLVE), whose time includes all iterations.
+ * Tracing is off as long as ExprTree.tracer is null.
+ */
+interface ExprTracer {
+    enum class Direction { UP, DOWN, SOLVE }
+
+    fun trace(node: ExprTree, direction: Direction, nanos: Long)
+}
+
+/**
+ * @class ExprTrace
+ * A tracer that records the last events in a ring buffer of fixed capacity.
+ * For each event it records the kind of node, its id, the time, and the size
+ * of the computed diagram. It is thread-safe.
+ *
+ * Usage: ExprTree.tracer = ExprTrace(); ... evaluate ...; ExprTrace.export(writer)
+ */
+class ExprTrace(val capacity: Int = 4096) : ExprTracer {
+
+    class Event(val node: String, val id: String, val direction: ExprTracer.Direction,
+                val nanos: Long, val leaves: Int, val height: Int) {
+        override fun toString() = "$node,$id,$direction,$nanos,$leaves,$height"
+    }
+
+    private val buffer = arrayOfNulls<Event>(capacity)
+    private var next = 0
+
+    /** Number of events traced since creation or clear(), including overwritten ones. */
+    var count = 0L
+        private set
+
+    init { require(capacity > 0) { "capacity must be > 0" } }
+
+    override fun trace(node: ExprTree, direction: ExprTracer.Direction, nanos: Long) {
+        val v = node.value
+        val e = Event(node.javaClass.simpleName, node.id, direction, nanos, v.numLeaves(), v.height())
+        synchronized(this) {
+            buffer[next] = e
+            next = (next + 1) % capacity
+            count++
+        }
+    }
+
+    /** Returns the recorded events, oldest first. */
+    @Synchronized
+    fun events(): List<Event> {
+        val n = Math.min(count, capacity.toLong()).toInt()
+        val start = if (count > capacity) next else 0
+        return List(n) { buffer[(start + it) % capacity]!! }
+    }
+
+    @Synchronized
+    fun clear() {
+        buffer.fill(null)
+        next = 0
+        count = 0
+    }
+
+    /** Writes the recorded events as CSV. */
+    fun export(w: Writer) {
+        w.write("node,id,direction,nanos,leaves,height\n")
+        for (e in events()) w.write("$e\n")
+        w.flush()
+    }
+}
@@ -3,6 +3,7 @@ package exprParser
 import jAADD.AADD
 import jAADD.BDD
 import jAADD.DD
+import java.util.*
 
 /**
  * The class ExpressionTree implements an attributed syntax tree (AST).
@@ -17,6 +18,8 @@ open class ExprTree(value: DD<*> = BDD.Infeasible,
     var value: DD<*>   = value   // The result computed or the value, if leaf
     var id: String      = id       // If a variable, its name.
     internal var parent = parent   // Reference to the parent node or null, if root.
+    internal var dirty = true      // Must be re-computed by evalUpIncr.
+    internal var extraParents: ArrayList<ExprTree>? = null // Further parents, if shared by ExprOptimizer.
 
     open fun copy(): ExprTree = ExprTree(value, id, parent)
 
@@ -28,6 +31,14 @@ open class ExprTree(value: DD<*> = BDD.Infeasible,
     val bdd: BDD
         get() = if (value is BDD) value as BDD else throw ExprError("wrong type. Expected BOOL.")
 
+    /** The value of a scalar number literal; null, if this is not a literal. */
+    internal val literal: Double?
+        get() {
+            if (id != "" || javaClass != ExprTree::class.java) return null
+            val v = value as? AADD ?: return null
+            return if (v.isLeaf && v.value!!.isScalar()) v.value!!.x0 else null
+        }
+
     @Throws(ExprError::class)
     open fun evalUp() {
         if (id == "") return  // a number literal.
@@ -36,6 +47,7 @@ open class ExprTree(value: DD<*> = BDD.Infeasible,
     }
 
     open fun evalDown() {
+        markDirty()
         if (id == "") return // a number literal
         val v: ExprTree = symTab.getVar(id)
         if (this.value is AADD)  {
@@ -45,14 +57,64 @@ open class ExprTree(value: DD<*> = BDD.Infeasible,
 
     /** This method computes the expression from the leaves to the root. */
     @Throws(ExprError::class)
-    open fun evalUpRec() = evalUp()
+    open fun evalUpRec() = traced(ExprTracer.Direction.UP) { evalUp() }
+
+    open fun evalDownRec() = traced(ExprTracer.Direction.DOWN) { evalDown() }
+
+    /**
+     * This method re-computes only the nodes that are marked as dirty, i.e. the nodes
+     * that read a variable changed since the last evaluation, and their path to the root.
+     */
+    @Throws(ExprError::class)
+    open fun evalUpIncr() {
+        if (!dirty) return
+        evalUpRec()
+        dirty = false
+    }
 
-    open fun evalDownRec() = evalDown()
+    /** Marks this node and its paths to the root to be re-computed. */
+    internal fun markDirty() {
+        var n: ExprTree? = this
+        while (n != null) {
+            n.dirty = true
+            if (n.extraParents != null) { markDirtyShared(n); return }
+            n = n.parent
+        }
+    }
+
+    /** Marks the paths from a shared node to the root; each node is visited once. */
+    private fun markDirtyShared(shared: ExprTree) {
+        val visited = Collections.newSetFromMap(IdentityHashMap<ExprTree, Boolean>())
+        val work = ArrayList<ExprTree>()
+        work.add(shared)
+        while (work.isNotEmpty()) {
+            val n = work.removeAt(work.size - 1)
+            if (!visited.add(n)) continue
+            n.dirty = true
+            n.parent?.let { work.add(it) }
+            n.extraParents?.let { work.addAll(it) }
+        }
+    }
+
+    /** Runs the computation of this node; if a tracer is set, it is called afterwards. */
+    internal inline fun traced(direction: ExprTracer.Direction, compute: () -> Unit) {
+        val t = tracer
+        if (t == null) {
+            compute()
+        } else {
+            val start = System.nanoTime()
+            compute()
+            t.trace(this, direction, System.nanoTime() - start)
+        }
+    }
 
     override fun toString(): String
         = if (id.isBlank()) "" + value else "(" + id + ": " + symTab.getVar(id).value + ")"
 
     companion object {
         lateinit var symTab: SymbolTable
+
+        /** Tracer for the evaluation of all expression trees; null for no tracing. */
+        @JvmStatic var tracer: ExprTracer? = null
     }
 }
\ No newline at end of file
@@ -11,6 +11,8 @@ internal class ExprTreeAaf: ExprTreeFunction(AADD.Reals, "aaf",
         ExprTree(AADD.Reals, "min"),
         ExprTree(AADD.Reals, "max"),
         ExprTree(AADD.Reals, "key")) {
+    override fun newInstance() = ExprTreeAaf()
+
     @Throws(ExprError::class)
     override fun evalUp() {
         if (param.size != 3) throw ExprError("aaf requires 3 parameters: min, max, symbol no.")
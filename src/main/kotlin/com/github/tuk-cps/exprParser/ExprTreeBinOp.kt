@@ -1,5 +1,7 @@
 package exprParser
 
+import jAADD.DD
+
 /**
  * @class ExprTreeBinOp
  * A binary operation.
@@ -13,8 +15,8 @@ internal class ExprTreeBinOp(l: ExprTree, op: Int, r: ExprTree) : ExprTree(l.val
     var op = op
 
     init {
-        l.parent = this
-        r.parent = this
+        this.l.parent = this
+        this.r.parent = this
     }
 
     override fun copy(): ExprTreeBinOp {
@@ -30,12 +32,27 @@ internal class ExprTreeBinOp(l: ExprTree, op: Int, r: ExprTree) : ExprTree(l.val
     override fun evalUpRec() {
         l.evalUpRec()
         r.evalUpRec()
-        evalUp()
+        traced(ExprTracer.Direction.UP) { evalUp() }
+    }
+
+    /** Re-computes the dirty childs, and then this node. */
+    @Throws(ExprError::class)
+    override fun evalUpIncr() {
+        if (!dirty) return
+        l.evalUpIncr()
+        r.evalUpIncr()
+        traced(ExprTracer.Direction.UP) { evalUp() }
+        dirty = false
     }
 
     /** Computes one level upwards, from childs to parent */
     @Throws(ExprError::class)
     override fun evalUp() {
+        val v = evalLiteral()
+        if (v != null) {
+            value = v
+            return
+        }
         value = when (op) {
             '+'.toInt() -> l.aadd + r.aadd
             '-'.toInt() -> l.aadd - r.aadd
@@ -50,7 +67,35 @@ internal class ExprTreeBinOp(l: ExprTree, op: Int, r: ExprTree) : ExprTree(l.val
             '='.toInt() -> throw ExprError("Equality of two AADD is not supported.")
             else -> throw ExprError("Operation " + op.toChar() + " resp. " + op + " not supported on AADD.")
         }
-        println("computed up: $this")
+    }
+
+    /**
+     * Computes this by the scalar kernels of AADD, if an operand is a number literal.
+     * @return the result, or null if there is no scalar kernel for the operation.
+     */
+    @Throws(ExprError::class)
+    private fun evalLiteral(): DD<*>? {
+        val c = r.literal
+        if (c != null) return when (op) {
+            '+'.toInt() -> l.aadd.plusScalar(c)
+            '-'.toInt() -> l.aadd.plusScalar(-c)
+            '*'.toInt() -> l.aadd.timesScalar(c)
+            '>'.toInt() -> l.aadd gt c
+            '<'.toInt() -> l.aadd lt c
+            ExprScanner.GE -> l.aadd ge c
+            ExprScanner.LE -> l.aadd le c
+            else -> null
+        }
+        val d = l.literal ?: return null
+        return when (op) {
+            '+'.toInt() -> r.aadd.plusScalar(d)
+            '*'.toInt() -> r.aadd.timesScalar(d)
+            '>'.toInt() -> r.aadd lt d
+            '<'.toInt() -> r.aadd gt d
+            ExprScanner.GE -> r.aadd le d
+            ExprScanner.LE -> r.aadd ge d
+            else -> null
+        }
     }
 
     /** Computes one level downwards, from parent to childs */
@@ -66,11 +111,10 @@ internal class ExprTreeBinOp(l: ExprTree, op: Int, r: ExprTree) : ExprTree(l.val
         }
         l.aadd.intersect(prevL)
         r.aadd.intersect(prevR)
-        println("computed down: $this")
     }
 
     override fun evalDownRec() {
-        evalDown()
+        traced(ExprTracer.Direction.DOWN) { evalDown() }
         l.evalDownRec()
         r.evalDownRec()
     }
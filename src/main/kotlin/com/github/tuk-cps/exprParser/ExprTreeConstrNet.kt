@@ -10,6 +10,10 @@ class ExprTreeConstrNet(l: ExprTree, r: ExprTree):
     var exprTree = r
     var leftSide = l
 
+    init {
+        exprTree.parent = this
+    }
+
     override fun evalUp() {
         exprTree.evalUp()
     }
@@ -18,21 +22,27 @@ class ExprTreeConstrNet(l: ExprTree, r: ExprTree):
         exprTree.evalUpRec()
     }
 
+    override fun evalUpIncr() {
+        if (!dirty) return
+        exprTree.evalUpIncr()
+        dirty = false
+    }
+
     override fun evalDown() {
         exprTree.evalDown()
     }
 
     override fun toString() = "EQN " + leftSide.toString() + "==" + exprTree.toString()
 
-    fun solve(iterations: Int) {
+    fun solve(iterations: Int) = traced(ExprTracer.Direction.SOLVE) {
         for (i in 1 .. iterations) {
             value = leftSide.value
             exprTree.evalUpRec()
             exprTree.evalDownRec()
             value = exprTree.value
             leftSide.value = value
+            symTab.changed(leftSide.id)
         }
-        println("lval="+leftSide.value+" "+leftSide)
     }
 
 
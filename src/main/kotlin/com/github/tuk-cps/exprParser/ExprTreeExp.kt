@@ -6,6 +6,8 @@ import jAADD.AADD
  * Predefined functions: exp
  */
 internal class ExprTreeExp : ExprTreeFunction(AADD.Reals, "exp", ExprTree(AADD.Reals, "x")) {
+    override fun newInstance() = ExprTreeExp()
+
     @Throws(ExprError::class)
     override fun evalUp() {
         value = getAADDParam(0).exp()
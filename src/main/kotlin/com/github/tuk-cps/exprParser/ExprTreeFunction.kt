@@ -7,14 +7,13 @@ import java.util.*
 
 /**
  * A function call of a user-defined function.
- * It defines a local scope by mapping the parameters to the variables used during declaration of the function.
- * It searches for variables only in the local scope.
+ * The body of the function is a template that is shared by all calls;
+ * it reads the parameters by their position from the call on top of the scopes.
  */
 open class ExprTreeFunction : ExprTree {
 
     var param: ArrayList<ExprTree> = ArrayList<ExprTree>()
-    internal var ast: ExprTree? = null
-        set(value) { field = if (value==null) null else value.copy() }
+    internal var ast: ExprTree? = null  // The template of the body, shared by all calls.
 
     internal constructor()
 
@@ -35,20 +34,31 @@ open class ExprTreeFunction : ExprTree {
     }
 
 
-    public override fun copy(): ExprTree {
-        return try {
-            val cp = javaClass.getDeclaredConstructor().newInstance()
-            cp.parent = parent
-            cp.id = id
-            cp.value = value
-            cp.ast = ast
-            cp.param = ArrayList(param)
-            for (i in param.indices) cp.param[i] = param[i].copy()
-            cp
-        } catch (e: Exception) {
-            e.printStackTrace()
-            return ExprTree(BDD.False, "Exception")
+    /** Creates an instance of the same class; overridden by each predefined function. */
+    internal open fun newInstance() = ExprTreeFunction()
+
+    /**
+     * Creates a call of this function with the given parameters.
+     * The template of the body is shared; the parameters are copied.
+     */
+    internal fun call(parameters: List<ExprTree>): ExprTreeFunction {
+        val cp = newInstance()
+        cp.id = id
+        cp.value = value
+        cp.ast = ast
+        cp.param = ArrayList(parameters.size)
+        for (p in parameters) {
+            val par = p.copy()
+            par.parent = cp
+            cp.param.add(par)
         }
+        return cp
+    }
+
+    public override fun copy(): ExprTree {
+        val cp = call(param)
+        cp.parent = parent
+        return cp
     }
 
     /**
@@ -58,23 +68,55 @@ open class ExprTreeFunction : ExprTree {
      */
     @Throws(ExprError::class)
     public override fun evalUp() {
-        assert(ast != null) { "AST of function call must not be null" }
-        // throw new ExprError("function "+id+" not defined."); // function not defined
-        // ast.evalExpr();
-        // ast = getSymTab().getFuncCall(id, param);
-        ast!!.evalUpRec()
-        value = ast!!.value
+        val body = ast ?: throw ExprError("function $id not defined.")
+        symTab.scopes.push(this)
+        try {
+            // The template is shared by all calls, possibly in other threads.
+            synchronized(body) {
+                body.evalUpRec()
+                value = body.value
+            }
+        } finally {
+            symTab.scopes.pop()
+        }
     }
 
-    // Computes the complete tree recursively.
+    // Computes the complete tree recursively; the parameters in the scope of the caller.
+    // If the function is memoized, the body is only evaluated for new arguments.
     @Throws(ExprError::class)
     public override fun evalUpRec() {
-        symTab.scopes.push(this)
         for (par in param) {
             par.evalUpRec()
         }
-        evalUp()
-        symTab.scopes.pop()
+        evalCall()
+    }
+
+    // Re-computes the dirty parameters, and then the call.
+    @Throws(ExprError::class)
+    override fun evalUpIncr() {
+        if (!dirty) return
+        for (par in param) {
+            par.evalUpIncr()
+        }
+        evalCall()
+        dirty = false
+    }
+
+    @Throws(ExprError::class)
+    private fun evalCall() {
+        val memo = if (ast == null) null else symTab.memo(id)
+        if (memo == null) {
+            traced(ExprTracer.Direction.UP) { evalUp() }
+            return
+        }
+        val key = memo.key(this, symTab)
+        val v = memo.get(key)
+        if (v != null) {
+            value = v
+        } else {
+            traced(ExprTracer.Direction.UP) { evalUp() }
+            memo.put(key, value)
+        }
     }
 
     @Throws(ExprError::class)
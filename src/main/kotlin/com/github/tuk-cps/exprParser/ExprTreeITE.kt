@@ -8,6 +8,8 @@ import jAADD.BDD.Companion.variable
  * The ITE function.
  */
 internal class ExprTreeITE : ExprTreeFunction(AADD.Reals, "ite", ExprTree(variable("x"), "i"), ExprTree(AADD.Reals, "t"), ExprTree(AADD.Reals, "e")) {
+    override fun newInstance() = ExprTreeITE()
+
     // ITE function
     @Throws(ExprError::class)
     override fun evalUp() {
@@ -18,20 +20,27 @@ internal class ExprTreeITE : ExprTreeFunction(AADD.Reals, "ite", ExprTree(variab
 
     // ITE parameters with lazy evaluation.
     @Throws(ExprError::class)
-    override fun evalUpRec() {
-        symTab.scopes.push(this)
-        getParam(0).evalUpRec() // Evaluate i
+    override fun evalUpRec() = evalLazy { it.evalUpRec() }
+
+    @Throws(ExprError::class)
+    override fun evalUpIncr() {
+        if (!dirty) return
+        evalLazy { it.evalUpIncr() }
+        dirty = false
+    }
+
+    private inline fun evalLazy(eval: (ExprTree) -> Unit) {
+        eval(getParam(0)) // Evaluate i
         val i = getBDDParam(0) //
         if (i === BDD.True) {
-            getParam(1).evalUpRec()
+            eval(getParam(1))
         } else if (i === BDD.False) {
-            getParam(2).evalUpRec()
+            eval(getParam(2))
         } else {
-            getParam(1).evalUpRec()
-            getParam(2).evalUpRec()
+            eval(getParam(1))
+            eval(getParam(2))
         }
         // now do ITE function.
-        evalUp()
-        symTab.scopes.pop()
+        traced(ExprTracer.Direction.UP) { evalUp() }
     }
 }
\ No newline at end of file
@@ -6,6 +6,8 @@ import jAADD.AADD
  * Predefined functions: log
  */
 internal class ExprTreeLog : ExprTreeFunction(AADD.Reals, "log", ExprTree(AADD.Reals, "x")) {
+    override fun newInstance() = ExprTreeLog()
+
     @Throws(ExprError::class)
     override fun evalUp() {
         value = getAADDParam(0).log()
@@ -0,0 +1,51 @@
+package exprParser
+
+/**
+ * @class ExprTreeNeg
+ * The unary minus; computed by negate().
+ */
+internal class ExprTreeNeg(x: ExprTree) : ExprTree(x.value, "internal") {
+
+    var x: ExprTree = x.copy()
+
+    init {
+        this.x.parent = this
+    }
+
+    override fun copy(): ExprTreeNeg {
+        val cp = ExprTreeNeg(x)
+        cp.parent = parent
+        cp.value = value
+        return cp
+    }
+
+    @Throws(ExprError::class)
+    override fun evalUpRec() {
+        x.evalUpRec()
+        traced(ExprTracer.Direction.UP) { evalUp() }
+    }
+
+    @Throws(ExprError::class)
+    override fun evalUpIncr() {
+        if (!dirty) return
+        x.evalUpIncr()
+        traced(ExprTracer.Direction.UP) { evalUp() }
+        dirty = false
+    }
+
+    @Throws(ExprError::class)
+    override fun evalUp() {
+        value = x.aadd.negate()
+    }
+
+    override fun evalDown() {
+        x.value = aadd.negate()
+    }
+
+    override fun evalDownRec() {
+        traced(ExprTracer.Direction.DOWN) { evalDown() }
+        x.evalDownRec()
+    }
+
+    override fun toString() = "(id: $id $value ) = -$x"
+}
@@ -6,6 +6,8 @@ import jAADD.BDD.Companion.variable
  * Predefined functions: not
  */
 internal class ExprTreeNot : ExprTreeFunction(variable("x"), "not", ExprTree(variable("x"), "x")) {
+    override fun newInstance() = ExprTreeNot()
+
     @Throws(ExprError::class)
     override fun evalUp() {
         if (param.size != 1) throw ExprError("not expects 1 parameter")
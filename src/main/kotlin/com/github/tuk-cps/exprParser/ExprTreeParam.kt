@@ -0,0 +1,28 @@
+package exprParser
+
+import jAADD.AADD
+
+/**
+ * @class ExprTreeParam
+ * A formal parameter in the template of the body of a user-defined function.
+ * It reads the value of the parameter at position slot from the function call on top of the scopes.
+ */
+internal class ExprTreeParam(val slot: Int, name: String) : ExprTree(AADD.Reals, name) {
+
+    override fun copy(): ExprTreeParam {
+        val cp = ExprTreeParam(slot, id)
+        cp.value = value
+        cp.parent = parent
+        return cp
+    }
+
+    @Throws(ExprError::class)
+    override fun evalUp() {
+        if (symTab.scopes.empty()) throw ExprError("parameter $id outside of function call")
+        value = symTab.scopes.peek().getParam(slot).value
+    }
+
+    override fun evalDown() = markDirty()
+
+    override fun toString() = id
+}
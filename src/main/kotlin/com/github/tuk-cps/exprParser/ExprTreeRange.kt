@@ -6,6 +6,8 @@ import jAADD.AADD
  * Predefined function: range, uses AADD with new noise symbol.
  */
 internal class ExprTreeRange : ExprTreeFunction(AADD.Reals, "range", ExprTree(AADD.Reals, "min"), ExprTree(AADD.Reals, "max")) {
+    override fun newInstance() = ExprTreeRange()
+
     @Throws(ExprError::class)
     override fun evalUp() {
         if (param.size != 2) throw ExprError("range expects 2 parameters")
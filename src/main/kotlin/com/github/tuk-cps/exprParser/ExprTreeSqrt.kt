@@ -6,6 +6,8 @@ import jAADD.AADD
  * Predefined functions: sqrt
  */
 internal class ExprTreeSqrt : ExprTreeFunction(AADD.Reals, "sqrt", ExprTree(AADD.Reals, "x")) {
+    override fun newInstance() = ExprTreeSqrt()
+
     @Throws(ExprError::class)
     override fun evalUp() {
         value = getAADDParam(0).sqrt()
@@ -0,0 +1,81 @@
+package exprParser
+
+import jAADD.DD
+
+/**
+ * @class FunctionMemo
+ * A memo table for the calls of a user-defined function; see SymbolTable.memoize.
+ * The key of a call is the identity of the values of its arguments and of the
+ * global variables read by the body, as AADD and BDD are immutable.
+ * If the table is full, the least recently used entry is evicted.
+ * It is thread-safe.
+ *
+ * Only functions whose body does not create new noise symbols, e.g. by range(),
+ * should be memoized; otherwise the calls with the same arguments share the symbol.
+ *
+ * @param capacity the maximum number of entries.
+ * @param globals the names of the global variables read by the body of the function.
+ */
+class FunctionMemo internal constructor(val capacity: Int, internal val globals: List<String>) {
+
+    var hits = 0L
+        private set
+    var misses = 0L
+        private set
+    var evictions = 0L
+        private set
+
+    /** Ratio of hits to all lookups. */
+    val hitRate: Double
+        @Synchronized get() = if (hits + misses == 0L) 0.0 else hits.toDouble() / (hits + misses)
+
+    val size: Int
+        @Synchronized get() = table.size
+
+    /** A key that compares the values by identity. */
+    internal class Key(private val values: Array<DD<*>>) {
+        private val hash = values.fold(1) { h, v -> 31 * h + System.identityHashCode(v) }
+        override fun hashCode() = hash
+        override fun equals(other: Any?): Boolean {
+            if (other !is Key || other.hash != hash || other.values.size != values.size) return false
+            for (i in values.indices) if (values[i] !== other.values[i]) return false
+            return true
+        }
+    }
+
+    private val table = object : LinkedHashMap<Key, DD<*>>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Key, DD<*>>): Boolean {
+            if (size <= capacity) return false
+            evictions++
+            return true
+        }
+    }
+
+    internal fun key(call: ExprTreeFunction, symTab: SymbolTable): Key {
+        val values = arrayOfNulls<DD<*>>(call.param.size + globals.size)
+        for (i in call.param.indices) values[i] = call.param[i].value
+        for (i in globals.indices) values[call.param.size + i] = symTab.getVar(globals[i]).value
+        @Suppress("UNCHECKED_CAST")
+        return Key(values as Array<DD<*>>)
+    }
+
+    @Synchronized
+    internal fun get(key: Key): DD<*>? {
+        val v = table[key]
+        if (v == null) misses++ else hits++
+        return v
+    }
+
+    @Synchronized
+    internal fun put(key: Key, value: DD<*>) { table[key] = value }
+
+    @Synchronized
+    fun clear() {
+        table.clear()
+        hits = 0
+        misses = 0
+        evictions = 0
+    }
+
+    override fun toString() = "FunctionMemo: $size entries, $hits hits, $misses misses, $evictions evictions"
+}
@@ -10,13 +10,23 @@ import kotlin.collections.HashMap
  * @class SymbolTable
  * A simple symbol table:
  * - a hash map for globel symbols.
- * - a stack of locals in the parameters of function calls.
+ * - a stack of function calls whose parameters are read by the bodies, one per thread.
+ * - optionally, a hash map per thread that overlays the globels; see ConstrNetSolver.solveParallel.
  * @author Christoph Grimm, Jack D. Martin
  */
 open class SymbolTable {
     // Global (HashMap) and local variables (Stack)
     private val globals: HashMap<String, ExprTree> = HashMap()
-    internal val scopes: Stack<ExprTreeFunction> = Stack()
+    private val localScopes = ThreadLocal.withInitial { Stack<ExprTreeFunction>() }
+    internal val scopes: Stack<ExprTreeFunction> get() = localScopes.get()
+    // Variables defined by the current thread while an overlay is active.
+    private val overlay = ThreadLocal<LinkedHashMap<String, ExprTree>?>()
+    // Nodes of the syntax trees that read a global variable; weak, as trees are dropped.
+    private val readers: HashMap<String, MutableSet<ExprTree>> = HashMap()
+    // Memo tables of user-defined functions.
+    private val memos: HashMap<String, FunctionMemo> = HashMap()
+    // Equations in the order of their definition.
+    internal val eqns: ArrayList<ExprTreeConstrNet> = ArrayList()
 
     /**
      * @method defVar
@@ -31,7 +41,108 @@ open class SymbolTable {
      * @param name
      * @param value
      */
-    fun defVar(name: String, value: DD<*>) { globals[name] = ExprTree(value, name) }
+    fun defVar(name: String, value: DD<*>) {
+        val o = overlay.get()
+        if (o != null) { o[name] = ExprTree(value, name); return }
+        globals[name] = ExprTree(value, name)
+        changed(name)
+    }
+
+    /**
+     * @method beginOverlay
+     * From now on, variables defined by the current thread are kept in an overlay
+     * that is only visible to the current thread; the globals are not modified.
+     */
+    internal fun beginOverlay() { overlay.set(LinkedHashMap()) }
+
+    /**
+     * @method endOverlay
+     * Ends the overlay of the current thread.
+     * @return the variables defined in the overlay, in the order of their first definition.
+     */
+    internal fun endOverlay(): Map<String, ExprTree> {
+        val o = overlay.get() ?: LinkedHashMap()
+        overlay.remove()
+        return o
+    }
+
+    /**
+     * @method changed
+     * Marks the nodes that read the variable, and their path to the root, as dirty.
+     * Called by defVar; to be called if the value of a variable is modified in place.
+     * @param name name of the variable.
+     */
+    fun changed(name: String) {
+        readers[name]?.forEach { it.markDirty() }
+    }
+
+    /**
+     * @method addReaders
+     * Registers the nodes of a syntax tree that read global variables.
+     * Calls of user-defined functions are registered for the globals read by their body.
+     * @param tree the root of the syntax tree.
+     */
+    internal fun addReaders(tree: ExprTree) {
+        when (tree) {
+            is ExprTreeBinOp -> { addReaders(tree.l); addReaders(tree.r) }
+            is ExprTreeNeg -> addReaders(tree.x)
+            is ExprTreeConstrNet -> addReaders(tree.exprTree)
+            is ExprTreeFunction -> {
+                for (p in tree.param) addReaders(p)
+                for (name in globalsRead(tree, HashSet())) addReader(name, tree)
+            }
+            else -> if (tree.id != "") addReader(tree.id, tree)
+        }
+    }
+
+    private fun addReader(name: String, node: ExprTree) {
+        readers.getOrPut(name) { Collections.newSetFromMap(WeakHashMap()) }.add(node)
+    }
+
+    /**
+     * @method defEqn
+     * Adds an equation to the constraint network solved by ConstrNetSolver.
+     * @param eqn the equation.
+     */
+    fun defEqn(eqn: ExprTreeConstrNet) { eqns.add(eqn) }
+
+    /** The names of the global variables read by an expression tree. */
+    internal fun globalsRead(tree: ExprTree): Set<String> {
+        val names = HashSet<String>()
+        fun collect(t: ExprTree) {
+            when (t) {
+                is ExprTreeBinOp -> { collect(t.l); collect(t.r) }
+                is ExprTreeNeg -> collect(t.x)
+                is ExprTreeConstrNet -> { names.add(t.leftSide.id); collect(t.exprTree) }
+                is ExprTreeFunction -> {
+                    for (p in t.param) collect(p)
+                    names.addAll(globalsRead(t, HashSet()))
+                }
+                else -> if (t.id != "") names.add(t.id)
+            }
+        }
+        collect(tree)
+        return names
+    }
+
+    /** The names of the global variables read by the body of a user-defined function. */
+    private fun globalsRead(call: ExprTreeFunction, visited: HashSet<String>): Set<String> {
+        val names = HashSet<String>()
+        val body = call.ast
+        if (body == null || !visited.add(call.id)) return names
+        fun collect(t: ExprTree) {
+            when (t) {
+                is ExprTreeBinOp -> { collect(t.l); collect(t.r) }
+                is ExprTreeNeg -> collect(t.x)
+                is ExprTreeConstrNet -> collect(t.exprTree)
+                is ExprTreeFunction -> { t.param.forEach { collect(it) }; names.addAll(globalsRead(t, visited)) }
+                is ExprTreeParam -> { }
+                else -> if (t.id != "") names.add(t.id)
+            }
+        }
+        collect(body)
+        return names
+    }
 
     /**
      * @method defFunc
@@ -76,6 +187,8 @@ open class SymbolTable {
     /**
      * @method ExprTreeFunction
      * For a user-defined function, sets the expr. tree in the object from the symbol table.
+     * A copy of the tree becomes the template of the body that is shared by all calls;
+     * in the template, the formal parameters are replaced by their position.
      * @param name the name of the function
      * @param ast the expression tree representing the function
      * @return
@@ -85,25 +198,70 @@ open class SymbolTable {
     fun defFuncBody(name: String, ast: ExprTree): ExprTreeFunction {
         val r = globals[name]
         if (r == null || r !is ExprTreeFunction) throw ExprError("identifier $name not a declared function")
-        r.ast = ast
+        r.ast = bindParams(ast.copy(), r.param.map { it.id })
         return r
     }
 
+    /** Replaces the leaves that are formal parameters by ExprTreeParam nodes. */
+    private fun bindParams(t: ExprTree, formal: List<String>): ExprTree {
+        when (t) {
+            is ExprTreeBinOp -> {
+                t.l = bindParams(t.l, formal)
+                t.r = bindParams(t.r, formal)
+                t.l.parent = t
+                t.r.parent = t
+            }
+            is ExprTreeNeg -> {
+                t.x = bindParams(t.x, formal)
+                t.x.parent = t
+            }
+            is ExprTreeFunction -> for (i in t.param.indices) {
+                t.param[i] = bindParams(t.param[i], formal)
+                t.param[i].parent = t
+            }
+            is ExprTreeConstrNet, is ExprTreeParam -> { }
+            else -> {
+                val slot = formal.indexOf(t.id)
+                if (t.id != "" && slot >= 0) return ExprTreeParam(slot, t.id)
+            }
+        }
+        return t
+    }
+
+    /**
+     * @method memoize
+     * Enables the memoization of the calls of a user-defined function.
+     * Calls with identical arguments and globals are then evaluated only once.
+     * @param name the name of the function.
+     * @param capacity the maximum number of memoized calls; 0 disables the memoization.
+     * @return the memo table with its statistics, or null if disabled.
+     * @throws ExprError
+     */
+    @JvmOverloads
+    @Throws(ExprError::class)
+    fun memoize(name: String, capacity: Int = 256): FunctionMemo? {
+        val r = globals[name]
+        if (r == null || r !is ExprTreeFunction || r.ast == null)
+            throw ExprError("identifier $name not a defined function")
+        require(capacity >= 0) { "capacity must be >= 0" }
+        if (capacity == 0) { memos.remove(name); return null }
+        val memo = FunctionMemo(capacity, ArrayList(globalsRead(r, HashSet())))
+        memos[name] = memo
+        return memo
+    }
+
+    /** The memo table of a function, or null if it is not memoized. */
+    internal fun memo(name: String): FunctionMemo? = if (memos.isEmpty()) null else memos[name]
+
     /**
      * @method getVar
      * During execution, it gets the entry for a variable from the symbol table.
-     * @param name name of a variable to be searched in the symbol table or the parameters of a function.
+     * @param name name of a variable to be searched in the symbol table.
      * @return Expression tree.
      */
     fun getVar(name: String): ExprTree {
-        // First search in params of last function call on the call stack.
-        if (!scopes.empty()) { // we are in function that is interpreted.
-            val params = scopes.peek().param
-            for (p in params)
-                if (p.id == name) return p.copy()
-        }
-        // Then search in globals; it not there, let it be a Real.
-        var r = globals[name]
+        // Search in the overlay and globals; it not there, let it be a Real.
+        var r = overlay.get()?.get(name) ?: globals[name]
         if (r == null) r = ExprTree(AADD.Reals, name)
         return r
     }
@@ -111,7 +269,7 @@ open class SymbolTable {
     /**
      * @method getFuncCall
      * @detail This method builds the expression tree for a function call.
-     * It sets the parameters of a function in the local symbol table.
+     * The call shares the template of the body with the declaration; the parameters are copied.
      * @param name
      * @param parameters
      * @return The Expression tree
@@ -124,13 +282,7 @@ open class SymbolTable {
             throw ExprError("identifier $name not a declared function")
         if (dec.param.size != parameters.size)
             throw ExprError("number of parameters for function $name not matching declaration")
-        val fCall = dec.copy() as ExprTreeFunction
-        for (i in fCall.param.indices) { // Parameters from Call ...
-            fCall.param[i] = parameters[i]
-            // Name from formal parameters.
-            fCall.param[i].id = dec.param[i].id
-        }
-        return fCall
+        return dec.call(parameters)
     }
 
     /**
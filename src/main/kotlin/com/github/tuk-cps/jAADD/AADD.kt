@@ -6,6 +6,8 @@ import jAADD.Conditions.newConstraint
 import org.apache.commons.math3.optim.linear.*
 import org.apache.commons.math3.optim.nonlinear.scalar.GoalType
 import java.util.*
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.RecursiveTask
 import java.util.function.BiFunction
 import kotlin.math.abs
 import kotlinx.coroutines.*
@@ -50,6 +52,12 @@ class AADD: DD<AffineForm>, Cloneable {
      */
     internal constructor(index: Int, T: AADD, F: AADD) : super(index, T, F)
 
+    /** Bounds of a leaf computed by LP, per path; created when first needed. */
+    @Volatile private var leafBounds: LeafBounds? = null
+
+    private fun leafBounds(): LeafBounds =
+            leafBounds ?: synchronized(this) { leafBounds ?: LeafBounds().also { leafBounds = it } }
+
     /**
      * Clone method. Makes a deep copy of the tree structure.
      * The leaves are not copied for BDD, where ONE and ZERO are merged.
@@ -61,13 +69,109 @@ class AADD: DD<AffineForm>, Cloneable {
 
     /**
      * Applies a unary operator on an AADD and returns its AADD result.
+     * If the operator is applied on at least applyParallelTh leaves, the leaves are computed on the
+     * fork/join pool; sub-diagrams with at most applyCutoff leaves are computed sequentially.
+     * Leaves whose path in this was found infeasible by LP are replaced by Infeasible; see isDead.
      * @param op operator to be applied on this AADD, returning result. This remains unchanged.
      * @return result of operation.
      */
     protected fun apply(block: AffineForm.() -> AffineForm): AADD {
+        if (isLeaf || isInfeasible) return applySeq(block, PathBuf(), 0)
+        val leaves = IdentityHashMap<AADD, Int>()
+        if (numLeaves(leaves) < applyParallelTh) return applySeq(block, PathBuf(), 0)
+        return ForkJoinPool.commonPool().invoke(ApplyTask(this, block, leaves, PathBuf(), 0))
+    }
+
+    private fun applySeq(block: AffineForm.() -> AffineForm, path: PathBuf, len: Int): AADD {
         if (isInfeasible) return Infeasible
-        return if (isLeaf) leaf(block(value!!) )
-               else internal(index, T()!!.apply(block), F()!!.apply(block))
+        if (isLeaf) return if (isDead(path, len)) Infeasible else leaf(block(value!!))
+        path.set(len, index, true)
+        val t = T()!!.applySeq(block, path, len + 1)
+        path.set(len, index, false)
+        return internal(index, t, F()!!.applySeq(block, path, len + 1))
+    }
+
+    /**
+     * The conditions on the path from the root to a node, as walked by apply, including boolean conditions.
+     * The arrays grow as needed; len is passed along by the recursion.
+     */
+    private class PathBuf(var indexes: IntArray = IntArray(8), var ge: BooleanArray = BooleanArray(8)) {
+        fun set(len: Int, index: Int, value: Boolean) {
+            if (len == indexes.size) {
+                indexes = indexes.copyOf(2 * len)
+                ge = ge.copyOf(2 * len)
+            }
+            indexes[len] = index
+            ge[len] = value
+        }
+
+        fun copy() = PathBuf(indexes.copyOf(), ge.copyOf())
+    }
+
+    /**
+     * True, if LP found the path of a leaf infeasible, i.e. its LeafBounds holds Range.Empty for the path.
+     * As in forEachLeaf, the boolean conditions are not part of the path in LeafBounds.
+     */
+    private fun isDead(path: PathBuf, len: Int): Boolean {
+        val bounds = leafBounds ?: return false
+        val indexes = IntArray(len)
+        val ge = BooleanArray(len)
+        var n = 0
+        for (i in 0 until len) {
+            if (getConstraint(path.indexes[i]) == null) continue
+            indexes[n] = path.indexes[i]
+            ge[n++] = path.ge[i]
+        }
+        return bounds[LeafBounds.Path(indexes, ge, n)]?.isEmpty() == true
+    }
+
+    /** Number of leaves on which apply computes the operator; shared sub-diagrams are counted per path. */
+    private fun numLeaves(leaves: IdentityHashMap<AADD, Int>): Int {
+        if (isLeaf || isInfeasible) return 1
+        leaves[this]?.let { return it }
+        val n = T()!!.numLeaves(leaves) + F()!!.numLeaves(leaves)
+        leaves[this] = n
+        return n
+    }
+
+    /** Applies a unary operator on a sub-diagram; reassembles the results by internal(). */
+    private class ApplyTask(val f: AADD, val block: AffineForm.() -> AffineForm,
+                            val leaves: IdentityHashMap<AADD, Int>,
+                            val path: PathBuf, val len: Int) : RecursiveTask<AADD>() {
+        override fun compute(): AADD {
+            if (f.isLeaf || f.isInfeasible || leaves[f]!! <= applyCutoff) return f.applySeq(block, path, len)
+            val pathT = path.copy()
+            pathT.set(len, f.index, true)
+            val t = ApplyTask(f.T()!!, block, leaves, pathT, len + 1)
+            t.fork()
+            path.set(len, f.index, false)
+            val fr = ApplyTask(f.F()!!, block, leaves, path, len + 1).compute()
+            return internal(f.index, t.join(), fr)
+        }
+    }
+
+    /**
+     * Applies an operation on all leaves at once; the leaves are given to the operation
+     * as an AffineFormBatch, and the AADD is rebuilt with the resulting affine forms.
+     * @param op operation on a batch that returns a batch of the same size. This remains unchanged.
+     * @return result of operation.
+     */
+    fun applyBatch(op: (AffineFormBatch) -> AffineFormBatch): AADD {
+        val leaves = IdentityHashMap<AADD, Int>()
+        val forms = ArrayList<AffineForm>()
+        fun collect(n: AADD) {
+            if (n.isInfeasible || leaves.containsKey(n)) return
+            if (n.isLeaf) { leaves[n] = forms.size; forms.add(n.value!!) }
+            else { collect(n.T()!!); collect(n.F()!!) }
+        }
+        collect(this)
+        val result = op(AffineFormBatch.of(forms))
+        require(result.size == forms.size) { "operation must return a batch of the same size" }
+        fun rebuild(n: AADD): AADD =
+                if (n.isInfeasible) Infeasible
+                else if (n.isLeaf) leaf(result[leaves[n]!!])
+                else internal(n.index, rebuild(n.T()!!), rebuild(n.F()!!))
+        return rebuild(this)
     }
 
     /** Negates a given AADD. @return negative value of this.  */
@@ -82,6 +186,21 @@ class AADD: DD<AffineForm>, Cloneable {
     /** Computes the natural logarithm of a given AADD. @return natural logarithm of this.  */
     fun log(): AADD = this.apply(AffineForm::log)
 
+    /** Computes the power of a given AADD. @return this to the power of p.  */
+    fun pow(p: Double): AADD = this.apply { pow(p) }
+
+    /** Computes the sine of a given AADD. @return sine of this.  */
+    fun sin(): AADD = this.apply(AffineForm::sin)
+
+    /** Computes the cosine of a given AADD. @return cosine of this.  */
+    fun cos(): AADD = this.apply(AffineForm::cos)
+
+    /** Computes the tangent of a given AADD. @return tangent of this.  */
+    fun tan(): AADD = this.apply(AffineForm::tan)
+
+    /** Computes the arc tangent of a given AADD. @return arc tangent of this.  */
+    fun atan(): AADD = this.apply(AffineForm::atan)
+
     /** Computes reciprocal of a given AADD. @return reciprocal of this.  */
     fun inv(): AADD = this.apply(AffineForm::inv)
 
@@ -93,7 +212,7 @@ class AADD: DD<AffineForm>, Cloneable {
      * @return constrained version of this.
      */
     fun intersect(lb: Double, ub: Double) =
-            ((this ge scalar(lb)) and (this le scalar(ub))).ite(this, Empty)
+            ((this ge lb) and (this le ub)).ite(this, Empty)
 
 
     /**
@@ -103,7 +222,7 @@ class AADD: DD<AffineForm>, Cloneable {
      * @return constrained version of this.
      */
     infix fun intersect(other: ClosedFloatingPointRange<Double>) =
-            ((this ge scalar(other.start)) and (this le scalar(other.endInclusive))).ite(this, Empty)
+            ((this ge other.start) and (this le other.endInclusive)).ite(this, Empty)
 
 
     /**
@@ -113,8 +232,9 @@ class AADD: DD<AffineForm>, Cloneable {
      * @return constrained version of this.
      */
     fun intersect(other: AADD): AADD {
-        val notTooLow = ge(scalar(other.getRange().min))
-        val notTooLarge = le(scalar(other.getRange().max))
+        val range = other.getRange()
+        val notTooLow = ge(range.min)
+        val notTooLarge = le(range.max)
         val overlap = notTooLow.and(notTooLarge)
         return overlap.ite(this, Empty)
     }
@@ -127,7 +247,15 @@ class AADD: DD<AffineForm>, Cloneable {
      * @param g parameter to be applied on this.
      * @return result of binary operation on this and g.
      */
-    private fun apply(op: BiFunction<AffineForm, AffineForm, AffineForm>, g: AADD): AADD {
+    private fun apply(op: BiFunction<AffineForm, AffineForm, AffineForm>, g: AADD): AADD =
+            apply(op, g, PathBuf(), 0, PathBuf(), 0)
+
+    /**
+     * The recursion of the binary apply; fp and gp are the paths in this and g.
+     * Leaves whose path was found infeasible by LP result in Infeasible; see isDead.
+     */
+    private fun apply(op: BiFunction<AffineForm, AffineForm, AffineForm>, g: AADD,
+                      fp: PathBuf, fl: Int, gp: PathBuf, gl: Int): AADD {
         val fT: AADD?
         val fF: AADD?
         val gT: AADD?
@@ -137,26 +265,35 @@ class AADD: DD<AffineForm>, Cloneable {
         if (isInfeasible || g.isInfeasible) return Infeasible
         if (isLeaf && value!!.isEmpty()) return Empty
         if (g.isLeaf && g.value!!.isEmpty()) return Empty
-        if (isLeaf && g.isLeaf) return leaf(op.apply(value!!, g.value!!))
+        if (isLeaf && g.isLeaf)
+            return if (isDead(fp, fl) || g.isDead(gp, gl)) Infeasible else leaf(op.apply(value!!, g.value!!))
 
         // Otherwise, recursion following the T/F childs with largest index.
         val idx = Math.min(index, g.index)
-        if (index <= g.index) {
+        val fDown = index <= g.index
+        val gDown = g.index <= index
+        if (fDown) {
             fT = T()
             fF = F()
         } else {
             fF = this
             fT = fF
         }
-        if (g.index <= index) {
+        if (gDown) {
             gT = g.T()
             gF = g.F()
         } else {
             gF = g
             gT = gF
         }
-        val Tr = fT!!.apply(op, gT!!)
-        val Fr = fF!!.apply(op, gF!!)
+        val fl1 = if (fDown) fl + 1 else fl
+        val gl1 = if (gDown) gl + 1 else gl
+        if (fDown) fp.set(fl, index, true)
+        if (gDown) gp.set(gl, g.index, true)
+        val Tr = fT!!.apply(op, gT!!, fp, fl1, gp, gl1)
+        if (fDown) fp.set(fl, index, false)
+        if (gDown) gp.set(gl, g.index, false)
+        val Fr = fF!!.apply(op, gF!!, fp, fl1, gp, gl1)
         return internal(idx, Tr, Fr)
     }
 
@@ -222,8 +359,22 @@ class AADD: DD<AffineForm>, Cloneable {
     operator fun times(b: AADD): AADD =
             this.apply(BiFunction { obj: AffineForm, other: AffineForm -> obj.times(other) }, b)
 
-    operator fun times(b: Double): AADD =
-            this.apply(BiFunction { obj: AffineForm, other: AffineForm -> obj.times(other) }, scalar(b))
+    operator fun times(b: Double): AADD = timesScalar(b)
+
+    /**
+     * Adds a constant to the leaves of this; unlike plus(scalar(c)), there is no second diagram
+     * to traverse and no affine form to allocate for the constant.
+     * @param c constant to be added to this.
+     * @return result of this + c.
+     */
+    fun plusScalar(c: Double): AADD = this.apply { plus(c) }
+
+    /**
+     * Multiplies the leaves of this by a constant; see plusScalar.
+     * @param c constant factor.
+     * @return result of this * c.
+     */
+    fun timesScalar(c: Double): AADD = this.apply { times(c) }
 
     operator fun div(b: AADD): AADD =
             this.apply(BiFunction { obj: AffineForm, other: AffineForm -> obj.div(other) }, b)
@@ -236,9 +387,7 @@ class AADD: DD<AffineForm>, Cloneable {
      * @return BDD
      */
     infix fun lt(other: AADD): BDD {
-        val temp = (this-other)
-        temp.getRange()
-        return temp.checkObjective("<") // this-g < 0
+        return (this - other).compareWithZero("<") // this-g < 0
     }
 
     /**
@@ -247,9 +396,7 @@ class AADD: DD<AffineForm>, Cloneable {
      * @return BDD
      */
     infix fun le(other: AADD): BDD {
-        val temp = (this - other)
-        temp.getRange()
-        return temp.checkObjective("<=") // this-g <=0
+        return (this - other).compareWithZero("<=") // this-g <=0
     }
 
     /**
@@ -258,9 +405,7 @@ class AADD: DD<AffineForm>, Cloneable {
      * @return A BDD that represents the comparison of the leaves.
      */
     infix fun gt(other: AADD): BDD {
-        val temp = this - other
-        temp.getRange()
-        return temp.checkObjective( ">") // this-other > 0
+        return (this - other).compareWithZero(">") // this-other > 0
     }
 
     /**
@@ -269,45 +414,168 @@ class AADD: DD<AffineForm>, Cloneable {
      * @return A BDD that represents the comparison of the leaves.
      */
     infix fun ge(other: AADD): BDD {
-        val temp = this - other
-        temp.getRange()
-        return temp.checkObjective(">=") // this-other >= 0
+        return (this - other).compareWithZero(">=") // this-other >= 0
     }
 
+    /** Implements `<` against a constant by plusScalar; see lt(AADD). */
+    infix fun lt(c: Double): BDD = compare(c, "<") // this-c < 0
+
+    /** Implements `<=` against a constant by plusScalar; see le(AADD). */
+    infix fun le(c: Double): BDD = compare(c, "<=") // this-c <= 0
+
+    /** Implements `>` against a constant by plusScalar; see gt(AADD). */
+    infix fun gt(c: Double): BDD = compare(c, ">") // this-c > 0
+
+    /** Implements `>=` against a constant by plusScalar; see ge(AADD). */
+    infix fun ge(c: Double): BDD = compare(c, ">=") // this-c >= 0
+
+    private fun compare(c: Double, op: String): BDD = plusScalar(-c).compareWithZero(op)
+
+    /**
+     * Compares the leaves of this with 0 in two phases:
+     *  *  leaves are decided by their own bounds, if possible,
+     *  *  the bounds of the remaining leaves are computed by the LP solver, as a batch in parallel;
+     *     the results are kept in the LeafBounds of the leaves, which are safe for concurrent use.
+     * Then, checkObjective creates the BDD.
+     */
+    private fun compareWithZero(op: String): BDD {
+        val options = RangeOptions.threshold()
+        val undecided = ArrayList<Undecided>()
+        collectUndecided(op, options, undecided)
+        if (undecided.size == 1) undecided[0].solve()
+        else if (undecided.size > 1) runBlocking(Dispatchers.Default) {
+            for (u in undecided) launch { u.solve() }
+        }
+        return checkObjective(op, options, IntArray(height()), BooleanArray(height()), 0)
+    }
+
+    /** A leaf whose comparison with 0 is not decided by its bounds, with the conditions on its path. */
+    private class Undecided(val leaf: AADD, val options: RangeOptions, val indexes: IntArray, val ge: BooleanArray) {
+        fun solve() = leaf.boundsOn(indexes, ge, indexes.size, options)
+    }
+
+    /** Collects the leaves that need the LP solver, as computeBounds would call it, but not decide(op). */
+    private fun collectUndecided(op: String, options: RangeOptions, out: MutableList<Undecided>) {
+        val indexes = IntArray(height())
+        val ge = BooleanArray(height())
+        forEachLeaf(indexes, ge, 0) { leaf, len ->
+            val value = leaf.value!!
+            if (!leaf.isInfeasible && !value.isEmpty() && decide(op, value) == null && leaf.refines(len, options)
+                    && leaf.leafBounds?.get(LeafBounds.Path(indexes, ge, len)) == null)
+                out.add(Undecided(leaf, options, indexes.copyOf(len), ge.copyOf(len)))
+        }
+    }
+
+    /**
+     * Calls action for each leaf, with the number of linear conditions on its path.
+     * The conditions are in indexes and ge up to this number; the arrays are reused for all leaves.
+     */
+    private fun forEachLeaf(indexes: IntArray, ge: BooleanArray, len: Int, action: (AADD, Int) -> Unit) {
+        if (isLeaf) return action(this, len)
+        if (!isBoolCond()) {
+            indexes[len] = index
+            ge[len] = true
+            T()!!.forEachLeaf(indexes, ge, len + 1, action)
+            ge[len] = false
+            F()!!.forEachLeaf(indexes, ge, len + 1, action)
+            return
+        }
+        T()!!.forEachLeaf(indexes, ge, len, action)
+        F()!!.forEachLeaf(indexes, ge, len, action)
+    }
+
+    /** True, if the bounds of a leaf with len linear conditions on its path are refined by LP with the options. */
+    private fun refines(len: Int, options: RangeOptions) =
+            len > 0 && value!!.isFinite() && options.refines(value.radius)
+
     /**
      * This method computes the Range of an AADD considering
      *  *  the conditions as linear constraints.
      *  *  the noise symbol's limitations to -1 to 1.
      *  *  The affine forms at the leaves as objective functions to be min/max.
+     * LP is solved for the leaves whose radius is above LPCallTh; see getRange(options).
+     */
+    fun getRange(): Range = getRange(RangeOptions.threshold()).range
+
+    /**
+     * Computes the Range of an AADD as getRange(), with the effort on LP given by options.
+     * @param options the tier of LP; see RangeOptions.
+     * @return the range and the leaves refined by LP.
      */
-    fun getRange(): Range {
+    fun getRange(options: RangeOptions): RangeReport {
+        if (options.branchAndBound) return getRangeBranchAndBound(options)
         val height = height()
         val indexes = IntArray(height)
         val signs = BooleanArray(height)
+        val report = RangeReport.Collector(options)
         var r = Range.RealsNaN
         runBlocking {
-             r = computeBounds(indexes, signs, 0)
+             r = computeBounds(indexes, signs, 0, report)
         }
-        return r
+        return report.report(r)
+    }
+
+    /** Computes getRange(options) with branch-and-bound over the leaves; see BranchAndBound. */
+    private fun getRangeBranchAndBound(options: RangeOptions): RangeReport {
+        val report = RangeReport.Collector(options)
+        val leaves = collectLeaves(options)
+        val range = BranchAndBound(leaves.bounds, leaves.pending, { i -> leaves.refine(i, report) }, report::skipped).run()
+        return report.report(range)
+    }
+
+    /**
+     * The leaves of an AADD with their paths and known bounds, as used by getRangeAnytime and
+     * getRangeBranchAndBound; pending are the leaves to be refined by LP with the options.
+     */
+    private class Leaves(val leaves: List<AADD>, val paths: List<LeafBounds.Path>,
+                         val bounds: Array<Range>, val pending: BooleanArray, val options: RangeOptions) {
+        fun refine(i: Int, report: RangeReport.Collector? = null): Range {
+            val path = paths[i]
+            return leaves[i].boundsOn(path.indexes, path.ge, path.indexes.size, options, report)
+        }
+    }
+
+    private fun collectLeaves(options: RangeOptions): Leaves {
+        val leaves = ArrayList<AADD>()
+        val paths = ArrayList<LeafBounds.Path>()
+        val bounds = ArrayList<Range>()
+        val pending = ArrayList<Boolean>()
+        val interval = RangeOptions.interval()
+        val indexes = IntArray(height())
+        val ge = BooleanArray(height())
+        forEachLeaf(indexes, ge, 0) { leaf, len ->
+            val known = leaf.boundsOn(indexes, ge, len, interval)
+            val path = LeafBounds.Path(indexes, ge, len)
+            leaves.add(leaf)
+            paths.add(path)
+            bounds.add(known)
+            pending.add(!known.isEmpty() && leaf.refines(len, options) && leaf.leafBounds?.get(path) == null)
+        }
+        return Leaves(leaves, paths, bounds.toTypedArray(), pending.toBooleanArray(), options)
+    }
+
+    /**
+     * Computes the Range of an AADD as getRange(options), but returns at once.
+     * The result is valid from the start on and is refined while the LP of the leaves are solved;
+     * the leaves closest to the current min or max are solved first. See AnytimeRange.
+     * @param options the leaves to refine; for RangeOptions.timeBoxed, the deadline.
+     * @param listener if not null, called with each tighter range.
+     * @return the range that is refined in the background.
+     */
+    @JvmOverloads
+    fun getRangeAnytime(options: RangeOptions = RangeOptions.threshold(), listener: ((Range) -> Unit)? = null): AnytimeRange {
+        val leaves = collectLeaves(options)
+        return AnytimeRange(leaves.bounds, leaves.pending, { i -> leaves.refine(i) }, options.deadline(), listener)
     }
 
     /**
      * Collects bounds of all leaves.
      * When the AADD is an internal node, it collects condition Xp,v on path to leave v.
-     * For each leaf, it calls callLPSolver to compute bounds.
+     * For each leaf, it gets the bounds on its path by boundsOn.
      * The method is called by getRange.
      */
-    private suspend fun computeBounds(indexes: IntArray, ge: BooleanArray, len: Int): Range {
-        if (isLeaf) {
-            if (isInfeasible || value!!.isEmpty()) return Range.Empty
-            if (value.isFinite()
-                    && indexes.size > 0
-                    && value.radius > LPCallTh
-                    && status == Status.notSolved)
-                callLPSolver(indexes, ge, len)
-            return  if (isInfeasible || value.isEmpty()) Range.Empty
-                    else Range(value.min, value.max)
-        }
+    private suspend fun computeBounds(indexes: IntArray, ge: BooleanArray, len: Int, report: RangeReport.Collector): Range {
+        if (isLeaf) return boundsOn(indexes, ge, len, report.options, report)
         if (!isBoolCond()) {
             var result: Range = Range.Empty
             indexes[len] = index
@@ -315,17 +583,40 @@ class AADD: DD<AffineForm>, Cloneable {
                 val resT = async() {
                     val ops = ge.copyOf()
                     ops[len] = true
-                    T()!!.computeBounds(indexes.copyOf(), ops, len + 1)
+                    T()!!.computeBounds(indexes.copyOf(), ops, len + 1, report)
                 }
                 val ops = ge
                 ops[len] = false
-                val resF = F()!!.computeBounds(indexes, ops, len + 1)
+                val resF = F()!!.computeBounds(indexes, ops, len + 1, report)
                 result = resT.await().join(resF)
             }
             return result
         }
-        val res = T()!!.computeBounds(indexes, ge, len)
-        return res.join(F()!!.computeBounds(indexes, ge, len))
+        val res = T()!!.computeBounds(indexes, ge, len, report)
+        return res.join(F()!!.computeBounds(indexes, ge, len, report))
+    }
+
+    /**
+     * The bounds of a leaf under the conditions on its path. They are computed by callLPSolver once
+     * per path and kept in leafBounds; the affine form of the leaf remains unchanged.
+     * @param options whether LP is solved for this leaf, and the parameters of the solver.
+     * @param report collects the refined and skipped leaves, if not null.
+     * @return the bounds, or Range.Empty if the path is infeasible.
+     */
+    private fun boundsOn(indexes: IntArray, ge: BooleanArray, len: Int,
+                         options: RangeOptions, report: RangeReport.Collector? = null): Range {
+        if (isInfeasible || value!!.isEmpty()) return Range.Empty
+        val interval = Range(value.min, value.max)
+        if (len == 0 || !value.isFinite()) return interval
+        val path = LeafBounds.Path(indexes, ge, len)
+        leafBounds?.get(path)?.let { return it }
+        if (!(report?.refines(value.radius) ?: options.refines(value.radius))) {
+            if (value.radius > 0.0) report?.skipped()
+            return interval
+        }
+        val bounds = callLPSolver(indexes, ge, len, options)
+        report?.refined(this, path, interval, bounds)
+        return if (options.keepsBounds) leafBounds().put(path, bounds) else bounds
     }
 
     /**
@@ -339,9 +630,10 @@ class AADD: DD<AffineForm>, Cloneable {
      * @param indexes the indexes from the path from root to the respective leave; set of conditions
      * @param ge Array with the results of conditions on the path to the respective leave.
      * @param len the sizes of the arrays.
-     * @return
+     * @param options the parameters of the simplex solver.
+     * @return the bounds of the leaf, or Range.Empty if the path is infeasible.
      */
-    private fun callLPSolver(indexes: IntArray, ge: BooleanArray, len: Int) {
+    private fun callLPSolver(indexes: IntArray, ge: BooleanArray, len: Int, options: RangeOptions): Range {
         require(len > 0) {"len of arrays must be >= 1"}
 
         // set union of noise symbols in Value() and conditions
@@ -383,18 +675,15 @@ class AADD: DD<AffineForm>, Cloneable {
         // if (AADD.debugLPsolver) printInequationSystem("InequationSystem", constraints, partial_terms, value)
 
         // Call LP solver
-        val solver = SimplexSolver(1.0e-3, 100, 1.0e-10)
+        val solver = SimplexSolver(options.epsilon, options.maxUlps, options.cutOff)
         try {
             val constraintSet = LinearConstraintSet(constraints)
             val solMax = solver.optimize(LinearObjectiveFunction(partial_terms, value.x0 + value.r), constraintSet, GoalType.MAXIMIZE, NonNegativeConstraint(false))
-            value.max = java.lang.Double.min(value.max, solMax.value)
             val solMin = solver.optimize(LinearObjectiveFunction(partial_terms, value.x0 - value.r), constraintSet, GoalType.MINIMIZE, NonNegativeConstraint(false))
-            value.min = java.lang.Double.max(value.min, solMin.value)
-            status = Status.feasible
+            return Range(java.lang.Double.max(value.min, solMin.value), java.lang.Double.min(value.max, solMax.value))
         } catch (e: NoFeasibleSolutionException) {
-            // Infeasible leaf, we mark the leaf as infeasible; the value is the empty range.
-            // value = null
-            status = Status.infeasible
+            // Infeasible path; the bounds are the empty range.
+            return Range.Empty
         } catch (e: UnboundedSolutionException) {
             // This should never happen. We write the inequation in a textfile for debugging.
             // Might be issue in LP solver. Modify Simplex cutoff and other parameters.
@@ -407,46 +696,67 @@ class AADD: DD<AffineForm>, Cloneable {
     /**
      * Creates a BDD, depending on the result of a comparison.
      * The result can either be True, False, or unknown, ich which case we add a new level to the BDD.
-     * @param indexes and operations of conditions from root to a leaf node
      * @param op
+     * @param options the options of LP for undecided leaves.
+     * @param indexes and operations of conditions from root to a leaf node
      * @return A BDD, set up recursively.
      */
-    private fun checkObjective(op: String): BDD {
+    private fun checkObjective(op: String, options: RangeOptions, indexes: IntArray, ge: BooleanArray, len: Int): BDD {
 
         if (isLeaf) {
-            if (isInfeasible || value!!.isEmpty()) return BDD.Infeasible
-
-            when(op) {
-                ">=" -> {   if (value.min.compareTo(0.0) > 0 || abs(value.min) < 2 * Double.MIN_VALUE) return BDD.True
-                            if (value.max.compareTo(0.0) < 0) return BDD.False
-                        }
-                ">" ->  {   if (value.min.compareTo(0.0) > 0) return BDD.True
-                            if (value.max.compareTo(0.0) < 0 || abs(value.max) < 2 * Double.MIN_VALUE) return BDD.False
-                        }
-                "<=" -> {   if (value.min.compareTo(0.0) > 0) return BDD.False
-                            if (value.max.compareTo(0.0) < 0 || abs(value.max) < 2 * Double.MIN_VALUE) return BDD.True
-                        }
-                "<" ->  {   if (value.min.compareTo(0.0) > 0 || abs(value.min) < 2 * Double.MIN_VALUE) return BDD.False
-                            if (value.max.compareTo(0.0) < 0) return BDD.True
-                        }
-            }
-            return if (op === ">=" || op === ">") internal(newConstraint(value), BDD.True, BDD.False)
-                   else internal(newConstraint(value), BDD.False, BDD.True)
+            val bounds = boundsOn(indexes, ge, len, options)
+            if (bounds.isEmpty()) return BDD.Infeasible
+            decide(op, bounds)?.let { return it }
+            return if (op === ">=" || op === ">") internal(newConstraint(value!!), BDD.True, BDD.False)
+                   else internal(newConstraint(value!!), BDD.False, BDD.True)
         }
 
         /* Recursion step. */
-        val Tr: BDD = T()!!.checkObjective(op)
-        val Fr: BDD = F()!!.checkObjective(op)
+        if (isBoolCond())
+            return internal(index, T()!!.checkObjective(op, options, indexes, ge, len),
+                                   F()!!.checkObjective(op, options, indexes, ge, len))
+        indexes[len] = index
+        ge[len] = true
+        val Tr: BDD = T()!!.checkObjective(op, options, indexes, ge, len + 1)
+        ge[len] = false
+        val Fr: BDD = F()!!.checkObjective(op, options, indexes, ge, len + 1)
         return internal(index, Tr, Fr)
     }
 
 
+    /** Decides the comparison of a leaf with 0 by its bounds; null, if the bounds do not decide it. */
+    private fun decide(op: String, value: Range): BDD? {
+        when(op) {
+            ">=" -> {   if (value.min.compareTo(0.0) > 0 || abs(value.min) < 2 * Double.MIN_VALUE) return BDD.True
+                        if (value.max.compareTo(0.0) < 0) return BDD.False
+                    }
+            ">" ->  {   if (value.min.compareTo(0.0) > 0) return BDD.True
+                        if (value.max.compareTo(0.0) < 0 || abs(value.max) < 2 * Double.MIN_VALUE) return BDD.False
+                    }
+            "<=" -> {   if (value.min.compareTo(0.0) > 0) return BDD.False
+                        if (value.max.compareTo(0.0) < 0 || abs(value.max) < 2 * Double.MIN_VALUE) return BDD.True
+                    }
+            "<" ->  {   if (value.min.compareTo(0.0) > 0 || abs(value.min) < 2 * Double.MIN_VALUE) return BDD.False
+                        if (value.max.compareTo(0.0) < 0) return BDD.True
+                    }
+        }
+        return null
+    }
+
     /** Casts T to AADD. @return T with type AADD. */
     internal fun T(): AADD? = T as AADD?
 
     /** Casts F to AADD. @return F with type AADD. */
     internal fun F(): AADD? = F as AADD?
 
+    /** Number of infeasible leaves, including leaves whose known paths are all infeasible by LP. */
+    override fun numInfeasible(): Int =
+            if (isLeaf) { if (isInfeasible || leafBounds?.allInfeasible() == true) 1 else 0 }
+            else T()!!.numInfeasible() + F()!!.numInfeasible()
+
+    /** The bounds of a leaf: the join of the bounds computed by LP, if any, else the bounds of its value. */
+    private fun knownBounds(): Range = leafBounds?.join() ?: Range(value!!.min, value.max)
+
     /**  Returns the number of leaves. */
     fun numFeasibleLeaves(): Int {
         if (isLeaf)
@@ -458,8 +768,9 @@ class AADD: DD<AffineForm>, Cloneable {
     /** Double in AADD. Allows us writing "Double in AADD" */
     operator fun contains(x: Double): Boolean {
         if (isLeaf) {
-            if (x>value!!.max) return false
-            if (x<value.min) return false
+            val bounds = knownBounds()
+            if (x > bounds.max) return false
+            if (x < bounds.min) return false
             return true
         } else {
             return T()!!.contains(x) || F()!!.contains(x)
@@ -469,8 +780,9 @@ class AADD: DD<AffineForm>, Cloneable {
     /** Overriden operator "in" that allows us to check "Double .. Double in AADD" -> Boolean */
     operator fun contains(x: ClosedFloatingPointRange<Double>): Boolean {
         if (isLeaf) {
-            if (x.start > value!!.max) return false
-            if (x.endInclusive < value.min) return false
+            val bounds = knownBounds()
+            if (x.start > bounds.max) return false
+            if (x.endInclusive < bounds.min) return false
             return true
         } else {
             return T()!!.contains(x) || F()!!.contains(x)
@@ -479,8 +791,8 @@ class AADD: DD<AffineForm>, Cloneable {
 
     override fun toString(): String {
         getRange()
-        if (isInfeasible) return "Infeasible"
-        if (isLeaf) return value.toString()
+        if (isInfeasible || leafBounds?.allInfeasible() == true) return "Infeasible"
+        if (isLeaf) return leafBounds?.join()?.toString() ?: value.toString()
         else return "ITE($index, $T, $F)"
     }
 
@@ -502,6 +814,8 @@ class AADD: DD<AffineForm>, Cloneable {
         var LPCallTh = 0.001 // If the radius is below this value, the LP Solver will not be called to compute a smaller range.
         var joinTh  = 0.001
         var toStringVerbose = false
+        var applyParallelTh = 4096 // Unary operations on at least this number of leaves run on the fork/join pool.
+        var applyCutoff = 512 // ... with sub-diagrams of at most this number of leaves computed sequentially.
 
         /** Factory: Creates a new leaf with an affine form as value.  */
         @JvmStatic
@@ -0,0 +1,254 @@
+package jAADD
+
+import jAADD.Conditions.getConstraint
+import java.util.*
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.RecursiveAction
+
+/**
+ * The class AADDBatchEvaluator evaluates an AADD for many concrete assignments of its
+ * noise symbols, e.g. for a Monte-Carlo validation of the bounds computed by getRange().
+ *
+ * The AADD is flattened once into arrays:
+ *  *  its internal nodes with the index of the condition and the T/F childs,
+ *  *  the linear conditions `x0 + sum ci ei >= 0` as sparse rows over the noise symbols,
+ *  *  the affine forms at the leaves as sparse rows over the same noise symbols.
+ *
+ * The assignments are given column-wise: `eps[k][j]` is the value of the noise symbol
+ * `symbols[k]` in sample j. The conditions are evaluated block-wise by plain loops over
+ * these columns, which HotSpot C2 can vectorize. Then, each sample follows its path to a
+ * leaf, and the leaf's affine form is evaluated without its r term; the modeled value is
+ * within `value +/- r`. Large sample sets are split over a fork/join pool.
+ *
+ * Boolean decision variables have no noise symbols. Their values are given per sample
+ * in boolean columns, in the order of `boolVars`.
+ * Leaves that are empty, infeasible or unbounded evaluate to NaN.
+ *
+ * @param aadd the AADD to be evaluated. It is not changed.
+ */
+class AADDBatchEvaluator(val aadd: AADD) {
+
+    /** The noise symbols of leaves and conditions; the order of the columns of eps. */
+    val symbols: IntArray
+
+    /** The indexes of the boolean conditions; the order of the columns of bools. */
+    val boolVars: IntArray
+
+    // Internal nodes: condition >= 0 is an index into the linear conditions,
+    // condition < 0 is -(b+1) with b an index into boolVars.
+    // Childs >= 0 are internal nodes, childs < 0 are leaves -(l+1).
+    private val nodeCond: IntArray
+    private val nodeT: IntArray
+    private val nodeF: IntArray
+    private val root: Int
+
+    // Linear conditions and leaves as sparse rows; columns are indexes into symbols.
+    private val condX0: DoubleArray
+    private val condCol: Array<IntArray>
+    private val condCoeff: Array<DoubleArray>
+    private val leafX0: DoubleArray
+    private val leafR: DoubleArray
+    private val leafCol: Array<IntArray>
+    private val leafCoeff: Array<DoubleArray>
+
+    /** Number of internal nodes and leaves of the flattened AADD. */
+    val numNodes: Int get() = nodeCond.size
+    val numLeaves: Int get() = leafX0.size
+
+    init {
+        val nodes = IdentityHashMap<AADD, Int>()
+        val leaves = ArrayList<AADD>()
+        val internals = ArrayList<AADD>()
+        val constrIdx = TreeMap<Int, Int>()
+        val boolIdx = TreeMap<Int, Int>()
+        val symbolSet = TreeSet<Int>()
+
+        // Numbers nodes and leaves; shared sub-diagrams are flattened once.
+        fun number(n: AADD): Int {
+            val known = nodes[n]
+            if (known != null) return known
+            val id: Int
+            if (n.isLeaf) {
+                id = -(leaves.size + 1)
+                leaves.add(n)
+                if (n.value != null) symbolSet.addAll(n.value.xi.keys)
+            } else {
+                id = internals.size
+                internals.add(n)
+                val constr = getConstraint(n.index)
+                if (constr != null) {
+                    if (constrIdx[n.index] == null) constrIdx[n.index] = constrIdx.size
+                    symbolSet.addAll(constr.xi.keys)
+                } else if (boolIdx[n.index] == null) boolIdx[n.index] = boolIdx.size
+            }
+            nodes[n] = id
+            if (n.isInternal) {
+                number(n.T()!!)
+                number(n.F()!!)
+            }
+            return id
+        }
+        root = number(aadd)
+
+        symbols = symbolSet.toIntArray()
+        val column = HashMap<Int, Int>()
+        for (k in symbols.indices) column[symbols[k]] = k
+
+        boolVars = IntArray(boolIdx.size)
+        for ((index, b) in boolIdx) boolVars[b] = index
+
+        nodeCond = IntArray(internals.size)
+        nodeT = IntArray(internals.size)
+        nodeF = IntArray(internals.size)
+        for (i in internals.indices) {
+            val n = internals[i]
+            val c = constrIdx[n.index]
+            nodeCond[i] = c ?: -(boolIdx[n.index]!! + 1)
+            nodeT[i] = nodes[n.T()!!]!!
+            nodeF[i] = nodes[n.F()!!]!!
+        }
+
+        condX0 = DoubleArray(constrIdx.size)
+        condCol = Array(constrIdx.size) { IntArray(0) }
+        condCoeff = Array(constrIdx.size) { DoubleArray(0) }
+        for ((index, c) in constrIdx) {
+            val constr = getConstraint(index)!!
+            condX0[c] = constr.x0
+            condCol[c] = IntArray(constr.xi.size)
+            condCoeff[c] = DoubleArray(constr.xi.size)
+            var t = 0
+            for ((symbol, coeff) in constr.xi) {
+                condCol[c][t] = column[symbol]!!
+                condCoeff[c][t++] = coeff
+            }
+        }
+
+        leafX0 = DoubleArray(leaves.size)
+        leafR = DoubleArray(leaves.size)
+        leafCol = Array(leaves.size) { IntArray(0) }
+        leafCoeff = Array(leaves.size) { DoubleArray(0) }
+        for (l in leaves.indices) {
+            val v = leaves[l].value
+            if (v == null || leaves[l].isInfeasible || v.isEmpty() || v.isReals() || !v.isFinite()) {
+                leafX0[l] = Double.NaN
+                leafR[l] = Double.NaN
+                continue
+            }
+            leafX0[l] = v.x0
+            leafR[l] = v.r
+            leafCol[l] = IntArray(v.xi.size)
+            leafCoeff[l] = DoubleArray(v.xi.size)
+            var t = 0
+            for ((symbol, coeff) in v.xi) {
+                leafCol[l][t] = column[symbol]!!
+                leafCoeff[l][t++] = coeff
+            }
+        }
+    }
+
+    /**
+     * Evaluates the samples from (inclusive) to (exclusive) in the calling thread.
+     * @param eps the values of the noise symbols; eps[k] is the column of symbols[k].
+     * @param values receives the values of the leaves' affine forms at position j.
+     * @param bools the values of the boolean variables; bools[b] is the column of boolVars[b].
+     * @param errors if not null, receives the r term of the leaf of each sample.
+     */
+    @JvmOverloads
+    fun evaluate(eps: Array<DoubleArray>, values: DoubleArray,
+                 from: Int = 0, to: Int = values.size,
+                 bools: Array<BooleanArray>? = null, errors: DoubleArray? = null) {
+        checkArgs(eps, values, from, to, bools, errors)
+        evaluateRange(eps, bools, values, errors, from, to)
+    }
+
+    /**
+     * Evaluates all samples on a fork/join pool.
+     * Ranges of samples smaller than parallelCutoff are evaluated sequentially.
+     */
+    @JvmOverloads
+    fun evaluateParallel(eps: Array<DoubleArray>, values: DoubleArray,
+                         bools: Array<BooleanArray>? = null, errors: DoubleArray? = null,
+                         pool: ForkJoinPool = ForkJoinPool.commonPool()) {
+        checkArgs(eps, values, 0, values.size, bools, errors)
+        pool.invoke(EvalTask(eps, bools, values, errors, 0, values.size))
+    }
+
+    private fun checkArgs(eps: Array<DoubleArray>, values: DoubleArray, from: Int, to: Int,
+                          bools: Array<BooleanArray>?, errors: DoubleArray?) {
+        require(eps.size == symbols.size) { "expected ${symbols.size} columns of noise symbols, got ${eps.size}" }
+        require(from in 0..to && to <= values.size) { "invalid range of samples: $from .. $to" }
+        for (col in eps) require(col.size >= to) { "column of noise symbols shorter than $to" }
+        if (boolVars.isNotEmpty()) {
+            require(bools != null && bools.size == boolVars.size) { "expected ${boolVars.size} columns of boolean variables" }
+            for (col in bools) require(col.size >= to) { "column of boolean variables shorter than $to" }
+        }
+        require(errors == null || errors.size >= to) { "errors shorter than $to" }
+    }
+
+    /** Splits the range of samples until it is below parallelCutoff. */
+    private inner class EvalTask(val eps: Array<DoubleArray>, val bools: Array<BooleanArray>?,
+                                 val values: DoubleArray, val errors: DoubleArray?,
+                                 val from: Int, val to: Int) : RecursiveAction() {
+        override fun compute() {
+            if (to - from <= parallelCutoff) {
+                evaluateRange(eps, bools, values, errors, from, to)
+            } else {
+                val mid = (from + to) ushr 1
+                invokeAll(EvalTask(eps, bools, values, errors, from, mid),
+                          EvalTask(eps, bools, values, errors, mid, to))
+            }
+        }
+    }
+
+    /** Evaluates the range of samples block by block. */
+    private fun evaluateRange(eps: Array<DoubleArray>, bools: Array<BooleanArray>?,
+                              values: DoubleArray, errors: DoubleArray?, from: Int, to: Int) {
+        val block = Math.min(blockSize, to - from)
+        val cond = Array(condX0.size) { BooleanArray(block) }
+        val acc = DoubleArray(block)
+        var start = from
+        while (start < to) {
+            val len = Math.min(block, to - start)
+
+            // Conditions, column by column; the inner loops run over contiguous arrays.
+            for (c in condX0.indices) {
+                Arrays.fill(acc, 0, len, condX0[c])
+                val cols = condCol[c]
+                val coeffs = condCoeff[c]
+                for (t in cols.indices) {
+                    val col = eps[cols[t]]
+                    val a = coeffs[t]
+                    for (j in 0 until len) acc[j] += a * col[start + j]
+                }
+                val res = cond[c]
+                for (j in 0 until len) res[j] = acc[j] >= 0.0
+            }
+
+            // Path to the leaf, and the affine form of the leaf.
+            for (j in 0 until len) {
+                var node = root
+                while (node >= 0) {
+                    val c = nodeCond[node]
+                    val isTrue = if (c >= 0) cond[c][j] else bools!![-c - 1][start + j]
+                    node = if (isTrue) nodeT[node] else nodeF[node]
+                }
+                val l = -node - 1
+                var v = leafX0[l]
+                val cols = leafCol[l]
+                val coeffs = leafCoeff[l]
+                for (t in cols.indices) v += coeffs[t] * eps[cols[t]][start + j]
+                values[start + j] = v
+                if (errors != null) errors[start + j] = leafR[l]
+            }
+            start += len
+        }
+    }
+
+    companion object {
+        /** Number of samples whose conditions are evaluated together. */
+        var blockSize = 1024
+
+        /** Ranges of samples below this size are not split further over fork/join. */
+        var parallelCutoff = 16384
+    }
+}
@@ -21,36 +21,30 @@ import kotlin.math.ulp
  * The code is based on the Java library by Cassio Pennachin
  *
  * The properties (noise variables, r) are immutable.
+ * The number of terms can be bounded by maxTerms; see Condensation.
  *
  * @author Christoph Grimmm, Carna Zivkovic
  *
  */
-class AffineForm(iv: Range, var x0: Double, var r: Double = 0.0, coeff: HashMap<Int,Double> = HashMap<Int,Double>()) :
-        Range(iv), Comparable<AffineForm> {
+class AffineForm private constructor(iv: Range, var x0: Double, var r: Double, val xi: HashMap<Int,Double>, rad: Double) :
+        Range(bounds(iv, x0, r, xi, rad)), Comparable<AffineForm> {
+
+    /**
+     * Creates an affine form with the given range, central value, r and partial deviations.
+     * The partial deviations are copied; the operations instead hand over their new maps
+     * by ofOwned, as the partial deviations of an affine form are never modified.
+     */
+    constructor(iv: Range, x0: Double, r: Double = 0.0, coeff: HashMap<Int,Double> = HashMap<Int,Double>()) :
+            this(iv, x0, r, HashMap(coeff), radiusOf(coeff))
 
     val central: Double get() = x0
 
-    val xi = HashMap(coeff);
-
-    init {
-        if ( isReals() && coeff.size == 0 ) { }
-        else if (isRanges() ) {
-            if (!x0.isFinite() || !r.isFinite()) {
-                setRealNaN()
-            }
-            for (v in xi.values)
-                if (!v.isFinite()) {
-                    setRealNaN()
-                }
-
-            val radius = radius
-            if (radius.isNaN()||radius.isInfinite()) setRealNaN()
-            else {
-                min = max(iv.min, x0 - r - radius)
-                max = min(iv.max, x0 + r + radius)
-            }
-        }
-    }
+    // Sum of the partial deviations, computed at construction; see radius.
+    // Gson does not call a constructor, and leaves radKnown false; hence, it is computed when first needed after fromJson.
+    @Transient
+    private var rad = rad
+    @Transient @Volatile
+    private var radKnown = true
 
     /* Permits to create special kind of AffineForms */
     internal constructor(kind: Kind) : this(Range(kind), 0.0)
@@ -91,10 +85,9 @@ class AffineForm(iv: Range, var x0: Double, var r: Double = 0.0, coeff: HashMap<
     val radius: Double
         get() {
             if (isEmpty()) return Double.NaN
-            var rad = 0.0
-            for (v in xi.values) {
-                if (v.isInfinite() || v.isNaN()) return Double.POSITIVE_INFINITY
-                rad += Math.abs(v); rad += rad.ulp
+            if (!radKnown) {
+                rad = radiusOf(xi)
+                radKnown = true
             }
             return rad // + r
         }
@@ -102,7 +95,7 @@ class AffineForm(iv: Range, var x0: Double, var r: Double = 0.0, coeff: HashMap<
     public override fun clone(): Any {
         if (isEmpty() || isReals()) return this
         if (isScalar()) return AffineForm(x0)
-        else return AffineForm(Range(min, max), x0, r, xi)
+        else return ofOwned(Range(min, max), x0, r, xi)
     }
 
     override fun equals(other: Any?): Boolean {
@@ -167,7 +160,8 @@ class AffineForm(iv: Range, var x0: Double, var r: Double = 0.0, coeff: HashMap<
                 nr += Math.abs(yi); nr += nr.ulp
             }
         }
-        return AffineForm(this as Range join other, nc, nr, nxi)
+        nr = condense(nxi, nr)
+        return ofOwned(this as Range join other, nc, nr, nxi)
     }
 
     /** Adds two affine forms   */
@@ -187,7 +181,8 @@ class AffineForm(iv: Range, var x0: Double, var r: Double = 0.0, coeff: HashMap<
         }
         var nr = r + other.r + err
         nr += nr.ulp
-        return AffineForm(this as Range+other, nc, nr, nts)
+        nr = condense(nts, nr)
+        return ofOwned(this as Range+other, nc, nr, nts)
     }
 
     /** Subtracts two affine forms   */
@@ -207,20 +202,20 @@ class AffineForm(iv: Range, var x0: Double, var r: Double = 0.0, coeff: HashMap<
         }
         var nr = r + other.r + err
         nr += nr.ulp
-        return AffineForm(this as Range-other, nc, nr, nts)
+        nr = condense(nts, nr)
+        return ofOwned(this as Range-other, nc, nr, nts)
     }
 
     /** Adds a (possibly negative) scalar to an affine form. */
     operator fun plus(delta: Double): AffineForm {
         if (isEmpty()) return Empty
         if (isReals()) return Reals
-        if (delta == Double.NaN) return Empty
+        if (delta.isNaN()) return Empty
         if (delta == Double.POSITIVE_INFINITY) return AffineForm(Double.POSITIVE_INFINITY)
         if (delta == Double.NEGATIVE_INFINITY) return AffineForm(Double.NEGATIVE_INFINITY)
         val nc = x0 + delta
         val nr = r + 2 * Math.ulp(nc) // noise symbol modeling quantization error.
-        val nts = HashMap(xi)
-        return AffineForm(this as Range - Range(delta), nc, nr, nts)
+        return ofOwned(Range(IntervalKernel.addDown(min, delta), IntervalKernel.addUp(max, delta)), nc, nr, xi)
     }
 
     /** Multiplies an affine form by a given scalar.  */
@@ -228,9 +223,16 @@ class AffineForm(iv: Range, var x0: Double, var r: Double = 0.0, coeff: HashMap<
         if (isEmpty()) return Empty
         if (isReals()) return Reals
         if (java.lang.Double.isNaN(alpha)) return Empty
-        val nts = HashMap<Int, Double>()
-        xi.keys.forEach { nts[it] = xi[it]!! * alpha}
-        return AffineForm(this as Range * Range(alpha), x0*alpha, r*Math.abs(alpha), nts)
+        val nc = x0 * alpha
+        var nr = r * Math.abs(alpha)
+        nr += nr.ulp + nc.ulp // noise symbol modeling quantization error.
+        val nts = HashMap<Int, Double>(capacity(xi.size))
+        for ((sym, v) in xi) {
+            val nval = v * alpha
+            nr += nval.ulp
+            nts[sym] = nval
+        }
+        return ofOwned(this as Range * Range(alpha), nc, nr, nts)
     }
 
     /** Negation  */
@@ -239,9 +241,9 @@ class AffineForm(iv: Range, var x0: Double, var r: Double = 0.0, coeff: HashMap<
         if (isReals()) return Reals
         val nc = -x0
         val nr = r
-        val nts = HashMap<Int, Double>()
-        xi.keys.forEach { nts[it] = -xi[it]!! }
-        return AffineForm(-Range(this), nc, nr, nts)
+        val nts = HashMap<Int, Double>(capacity(xi.size))
+        for ((sym, v) in xi) nts[sym] = -v
+        return ofOwned(-Range(this), nc, nr, nts)
     }
 
     /**
@@ -254,7 +256,7 @@ class AffineForm(iv: Range, var x0: Double, var r: Double = 0.0, coeff: HashMap<
         // if (isTrap(other)) return AffineForm(handleTrap(other))
         if (isScalar() && other.isScalar()) return AffineForm(x0 * other.x0)
         val c = x0 * other.x0
-        val noise = Math.abs(x0) * other.r + Math.abs(other.x0) * r + (radius + r) * (other.radius + other.r)
+        var noise = Math.abs(x0) * other.r + Math.abs(other.x0) * r + (radius + r) * (other.radius + other.r)
         val nts = HashMap<Int, Double>()
         val idx: MutableSet<Int> = HashSet(xi.keys)
         idx.addAll(other.xi.keys)
@@ -263,7 +265,8 @@ class AffineForm(iv: Range, var x0: Double, var r: Double = 0.0, coeff: HashMap<
             val yi = if (other.xi.containsKey(it)) other.xi[it]!! else 0.0
             nts[it] = xi * other.x0 + yi * x0
         }
-        return AffineForm(Range(this)*Range(other), c, noise, nts)
+        noise = condense(nts, noise)
+        return ofOwned(Range(this)*Range(other), c, noise, nts)
     }
 
     /** Scalar addition, multiplication and noise increment on a single form */
@@ -273,18 +276,18 @@ class AffineForm(iv: Range, var x0: Double, var r: Double = 0.0, coeff: HashMap<
         val nc = x0 * alpha + delta
         var nr = r * Math.abs(alpha) + noise
         nr += nr.ulp + nc.ulp
-        val nts = HashMap(xi)
-        for (sym in xi.keys) {
-            val nval = xi[sym]!! * alpha
+        val nts = HashMap<Int, Double>(capacity(xi.size))
+        for ((sym, v) in xi) {
+            val nval = v * alpha
             nr += nval.ulp
-            nts[sym] = xi[sym]!! * alpha
+            nts[sym] = nval
         }
         var nMin = min * alpha + delta
         nMin -= nMin.ulp
         var nMax = max * alpha + delta
         nMax += nMax.ulp
-        return AffineForm(Range(Math.min(nMin - noise, nMax - noise),
-                          Math.max(nMin + noise, nMax + noise)), nc, nr, nts)
+        return ofOwned(Range(Math.min(nMin - noise, nMax - noise),
+                             Math.max(nMin + noise, nMax + noise)), nc, nr, nts)
     }
 
     /** Exponentiation */
@@ -304,23 +307,36 @@ class AffineForm(iv: Range, var x0: Double, var r: Double = 0.0, coeff: HashMap<
             val d = aux.min - iaMin
             // NOTE: PLOP uses central + d, but I think that's a typo/bug, as
             // we decrease min, so it doesn' make sense to increase central.
-            return AffineForm(Range(iaMin, aux.max), aux.x0 - d, aux.r + d, aux.xi)
+            return ofOwned(Range(iaMin, aux.max), aux.x0 - d, aux.r + d, aux.xi)
         } else if (aux.min.compareTo(0.0) < 0) {
             val d = Double.MIN_VALUE - aux.min
-            return AffineForm(Range(Double.MIN_VALUE, aux.max), aux.x0 + d, aux.r + d, aux.xi )
+            return ofOwned(Range(Double.MIN_VALUE, aux.max), aux.x0 + d, aux.r + d, aux.xi)
         }
         return aux
     }
 
+    /** Square root; negative values are ignored. */
+    fun sqrt(): AffineForm {
+        if (isEmpty()) return Empty
+        if (isReals()) return Reals
+        if (max < 0.0) return RealsNaN
+        if (isScalar()) return AffineForm(Math.sqrt(x0))
+        return approximate(Elementary.Sqrt, Math.max(min, 0.0), max)
+    }
+
     /**
-     * Square root. Use the property that sqrt(x) = e ^ (0.5 log x)
-     * TODO: Replace with Stolfi's min-range approximation that is more accurate.
+     * Power x^p. For p that is not an integer, negative values are ignored.
+     * @param p the exponent.
      */
-    fun sqrt(): AffineForm {
+    fun pow(p: Double): AffineForm {
         if (isEmpty()) return Empty
         if (isReals()) return Reals
-        val halfLog = log().times(0.5)
-        return halfLog.exp()
+        if (p == 0.0) return AffineForm(1.0)
+        if (p == 1.0) return this
+        val integer = p == Math.rint(p)
+        if ((!integer && max < 0.0) || (p < 0.0 && min <= 0.0 && max >= 0.0)) return RealsNaN
+        if (isScalar()) return AffineForm(Math.pow(x0, p))
+        return approximate(Elementary.Pow(p), if (integer) min else Math.max(min, 0.0), max)
     }
 
     /** Natural logarithm */
@@ -370,36 +386,101 @@ class AffineForm(iv: Range, var x0: Double, var r: Double = 0.0, coeff: HashMap<
         if (isEmpty()) return Empty
         if (isReals()) return Reals
         if (isScalar()) return AffineForm(x0 * x0)
-        // Affine forms are supposed to be immutable, so we need to create a
-        // new one after messing up with aux's internals.
+        // Affine forms are immutable, so the result is created from the adjusted values of aux.
         val aux = times(this)
-        var d = aux.r - aux.x0
+        var nc = aux.x0
+        var nr = aux.r
+        var d = nr - nc
         if (java.lang.Double.compare(d, 0.0) > 0) {
             d /= 2.0
-            aux.r -= d
-            aux.x0 += d
+            nr -= d
+            nc += d
         }
-        if (java.lang.Double.compare(aux.max, 0.0) > 0 && java.lang.Double.compare(aux.min, 0.0) < 0) {
-            aux.max = Math.max(aux.max, -aux.min)
-            aux.min = 0.0
+        var nMin = aux.min
+        var nMax = aux.max
+        if (java.lang.Double.compare(nMax, 0.0) > 0 && java.lang.Double.compare(nMin, 0.0) < 0) {
+            nMax = Math.max(nMax, -nMin)
+            nMin = 0.0
         }
-        return AffineForm(Range(aux.min, aux.max),aux.x0, aux.r, aux.xi)
+        return ofOwned(Range(nMin, nMax), nc, nr, aux.xi)
     }
 
-    /** TODO: Port proper least squares approximation */
+    /** Sine */
     fun sin(): AffineForm {
         if (isEmpty()) return Empty
         if (isReals()) return Reals
-        return if (isScalar()) AffineForm(Math.sin(x0))
-               else AffineForm(-1.0, 1.0, -1)
+        if (isScalar()) return AffineForm(Math.sin(x0))
+        if (max - min >= 2 * Math.PI) return AffineForm(-1.0, 1.0, -1)
+        return approximate(Elementary.Sin, min, max)
     }
 
-    // TODO: Port proper least squares approximation
+    /** Cosine */
     fun cos(): AffineForm {
         if (isEmpty()) return Empty
         if (isReals()) return Reals
-        return if (isScalar()) AffineForm(Math.cos(x0))
-               else AffineForm(-1.0, 1.0, -1)
+        if (isScalar()) return AffineForm(Math.cos(x0))
+        if (max - min >= 2 * Math.PI) return AffineForm(-1.0, 1.0, -1)
+        return approximate(Elementary.Cos, min, max)
+    }
+
+    /** Tangent; if the range includes a pole, the result is RealsNaN. */
+    fun tan(): AffineForm {
+        if (isEmpty()) return Empty
+        if (isReals()) return Reals
+        if (isScalar()) return AffineForm(Math.tan(x0))
+        val pole = Math.PI / 2 + Math.ceil((min - Math.PI / 2) / Math.PI) * Math.PI
+        if (max - min >= Math.PI || pole <= max) return RealsNaN
+        return approximate(Elementary.Tan, min, max)
+    }
+
+    /** Arc tangent */
+    fun atan(): AffineForm {
+        if (isEmpty()) return Empty
+        if (isReals()) return AffineForm(-Math.PI / 2, Math.PI / 2, -1)
+        if (isScalar()) return AffineForm(Math.atan(x0))
+        return approximate(Elementary.Atan, min, max)
+    }
+
+    /**
+     * Affine approximation of an elementary function f on [a, b] by alpha*x + delta +- noise.
+     * The slope alpha is the one of the secant (Chebyshev approximation); or, for the min-range
+     * approximation, the derivative with the smaller magnitude at the bounds, or 0 if f is not monotonic.
+     * delta and noise follow from the range of the error f(x) - alpha*x, evaluated at the bounds and at
+     * the points in between where f'(x) = alpha. The range of the result is intersected with the range
+     * of f, evaluated at the bounds and at the points in between where f'(x) = 0.
+     */
+    private fun approximate(f: Elementary, a: Double, b: Double): AffineForm {
+        if (!a.isFinite() || !b.isFinite()) return RealsNaN
+        val fa = f.f(a)
+        val fb = f.f(b)
+        if (a == b) return AffineForm(fa)
+        var fMin = Math.min(fa, fb)
+        var fMax = Math.max(fa, fb)
+        val extrema = f.solve(0.0, a, b)
+        for (x in extrema) {
+            fMin = Math.min(fMin, f.f(x))
+            fMax = Math.max(fMax, f.f(x))
+        }
+        fMin = Math.nextDown(fMin)
+        fMax = Math.nextUp(fMax)
+        val alpha = when {
+            approximation == Approximation.CHEBYSHEV -> (fb - fa) / (b - a)
+            extrema.isNotEmpty() -> 0.0
+            Math.abs(f.df(a)) < Math.abs(f.df(b)) -> f.df(a)
+            else -> f.df(b)
+        }
+        if (alpha == 0.0 || !alpha.isFinite()) return AffineForm(fMin, fMax, -1)
+        var eMin = Math.min(fa - alpha * a, fb - alpha * b)
+        var eMax = Math.max(fa - alpha * a, fb - alpha * b)
+        for (x in f.solve(alpha, a, b)) {
+            eMin = Math.min(eMin, f.f(x) - alpha * x)
+            eMax = Math.max(eMax, f.f(x) - alpha * x)
+        }
+        // rounding errors of f and of the error terms.
+        val mag = Math.max(Math.max(Math.abs(fMin), Math.abs(fMax)), Math.max(Math.abs(alpha * a), Math.abs(alpha * b)))
+        val noise = (eMax - eMin) / 2 + 4 * mag.ulp
+        val aux = affine(alpha, (eMin + eMax) / 2, noise)
+        return ofOwned(Range(Math.max(aux.min, fMin), Math.min(aux.max, fMax)), aux.x0, aux.r, aux.xi)
     }
 
     fun toJson(): String {
@@ -448,5 +529,51 @@ class AffineForm(iv: Range, var x0: Double, var r: Double = 0.0, coeff: HashMap<
 
         @JvmField
         val Empty = AffineForm(Range.Empty)
+
+        /**
+         * Creates an affine form that takes over xi instead of copying it; xi may also be the map of
+         * another affine form. The caller must not modify xi afterwards.
+         */
+        internal fun ofOwned(iv: Range, x0: Double, r: Double, xi: HashMap<Int, Double>) =
+                AffineForm(iv, x0, r, xi, radiusOf(xi))
+
+        /**
+         * The bounds of an affine form with the range iv: if iv is a range, it is narrowed to x0 +- (r + rad).
+         * If a partial deviation is not finite, rad is infinite, and the bounds are RealsNaN.
+         */
+        private fun bounds(iv: Range, x0: Double, r: Double, xi: HashMap<Int, Double>, rad: Double): Range {
+            if (iv.isReals() && xi.size == 0 || !iv.isRanges()) return iv
+            if (rad.isNaN() || rad.isInfinite()) return Range.RealsNaN
+            return Range(max(iv.min, x0 - r - rad), min(iv.max, x0 + r + rad))
+        }
+
+        /** Settings for the condensation of the partial deviations; see Condensation. */
+        var maxTerms = Int.MAX_VALUE // If an operation results in more terms, they are condensed to maxTerms.
+        var condensation: Condensation = Condensation.IntoNewSymbol
+
+        /** The kind of the affine approximation of sqrt, pow, sin, cos, tan and atan. */
+        var approximation = Approximation.CHEBYSHEV
+
+        /**
+         * Condenses the new partial deviations of an operation if there are more than maxTerms.
+         * @return r, increased by the deviations merged into it.
+         */
+        private fun condense(xi: HashMap<Int, Double>, r: Double): Double {
+            if (xi.size <= maxTerms) return r
+            return IntervalKernel.addUp(r, condensation.condense(xi, maxTerms))
+        }
+
+        /** Sum of the absolute partial deviations, rounded upwards; infinite if one is not finite. */
+        private fun radiusOf(xi: HashMap<Int, Double>): Double {
+            var rad = 0.0
+            for (v in xi.values) {
+                if (v.isInfinite() || v.isNaN()) return Double.POSITIVE_INFINITY
+                rad += Math.abs(v); rad += rad.ulp
+            }
+            return rad
+        }
+
+        /** Initial capacity of a hash map for n entries without rehashing. */
+        private fun capacity(n: Int) = n * 4 / 3 + 1
     }
 }
@@ -0,0 +1,252 @@
+package jAADD
+
+import java.util.*
+
+/**
+ * The class AffineFormBatch holds many affine forms as a structure of arrays, e.g. the leaves
+ * of an AADD; see AADD.applyBatch. For form i,
+ *  *  x0[i] and r[i] are the central value and the nonlinear and rounding deviation,
+ *  *  coeff[k][i] is the partial deviation of the noise symbol symbols[k], 0.0 if the form has none,
+ *  *  min[i] and max[i] are the bounds, as in AffineForm.
+ * The columns of all forms are aligned over the sorted, shared set of noise symbols.
+ *
+ * The operations plus, times and affine compute all forms at once by plain loops over the columns,
+ * without branches or calls in the loops, which HotSpot C2 can vectorize.
+ * Instead of ulps, rounding errors are bounded by the relative machine epsilon EPS, which
+ * vectorizes; hence, the results enclose the ones of AffineForm, but may differ in the last digits.
+ *
+ * Forms that are empty, unbounded or Reals are kept aside, and the operations of AffineForm are
+ * applied on them instead.
+ */
+class AffineFormBatch private constructor(
+        /** The sorted noise symbols of the columns. */
+        val symbols: IntArray,
+        private val x0: DoubleArray,
+        private val r: DoubleArray,
+        private val coeff: Array<DoubleArray>,
+        private val min: DoubleArray,
+        private val max: DoubleArray,
+        private val special: Array<AffineForm?>) {
+
+    /** Number of affine forms. */
+    val size: Int get() = x0.size
+
+    /** Returns the affine form i. */
+    operator fun get(i: Int): AffineForm {
+        special[i]?.let { return it }
+        val xi = HashMap<Int, Double>()
+        for (k in symbols.indices) if (coeff[k][i] != 0.0) xi[symbols[k]] = coeff[k][i]
+        return AffineForm.ofOwned(Range(min[i], max[i]), x0[i], r[i], xi)
+    }
+
+    /** Returns all affine forms. */
+    fun toList(): List<AffineForm> = List(size) { get(it) }
+
+    /** Adds the forms of two batches of the same size pairwise. */
+    operator fun plus(other: AffineFormBatch): AffineFormBatch {
+        require(other.size == size) { "batches of different size" }
+        val n = size
+        val union = union(symbols, other.symbols)
+        val err = DoubleArray(n)
+        val ncoeff = Array(union.size) { k ->
+            val a = column(union[k])
+            val b = other.column(union[k])
+            when {
+                a == null -> b!!.copyOf()
+                b == null -> a.copyOf()
+                else -> {
+                    val c = DoubleArray(n)
+                    for (i in 0 until n) {
+                        c[i] = a[i] + b[i]
+                        err[i] += Math.abs(c[i])
+                    }
+                    c
+                }
+            }
+        }
+        val nx0 = DoubleArray(n)
+        val nr = DoubleArray(n)
+        val nmin = DoubleArray(n)
+        val nmax = DoubleArray(n)
+        for (i in 0 until n) {
+            nx0[i] = x0[i] + other.x0[i]
+            nr[i] = (r[i] + other.r[i] + (err[i] + Math.abs(nx0[i])) * EPS + ETA) * (1 + 2 * EPS)
+            val lo = min[i] + other.min[i]
+            val hi = max[i] + other.max[i]
+            nmin[i] = lo - Math.abs(lo) * EPS - ETA
+            nmax[i] = hi + Math.abs(hi) * EPS + ETA
+        }
+        return binary(union, nx0, nr, ncoeff, nmin, nmax, other) { a, b -> a + b }
+    }
+
+    /**
+     * Multiplies the forms of two batches of the same size pairwise.
+     * Uses the approximation of Stolfi et al., as AffineForm.times.
+     */
+    operator fun times(other: AffineFormBatch): AffineFormBatch {
+        require(other.size == size) { "batches of different size" }
+        val n = size
+        val union = union(symbols, other.symbols)
+        val err = DoubleArray(n)
+        val ncoeff = Array(union.size) { k ->
+            val a = column(union[k])
+            val b = other.column(union[k])
+            val c = DoubleArray(n)
+            if (a != null && b != null)
+                for (i in 0 until n) {
+                    c[i] = a[i] * other.x0[i] + b[i] * x0[i]
+                    err[i] += Math.abs(c[i])
+                }
+            else if (a != null)
+                for (i in 0 until n) {
+                    c[i] = a[i] * other.x0[i]
+                    err[i] += Math.abs(c[i])
+                }
+            else
+                for (i in 0 until n) {
+                    c[i] = b!![i] * x0[i]
+                    err[i] += Math.abs(c[i])
+                }
+            c
+        }
+        val radA = radius()
+        val radB = other.radius()
+        val nx0 = DoubleArray(n)
+        val nr = DoubleArray(n)
+        val nmin = DoubleArray(n)
+        val nmax = DoubleArray(n)
+        for (i in 0 until n) {
+            nx0[i] = x0[i] * other.x0[i]
+            val noise = Math.abs(x0[i]) * other.r[i] + Math.abs(other.x0[i]) * r[i] +
+                    (radA[i] + r[i]) * (radB[i] + other.r[i])
+            nr[i] = (noise + (2 * err[i] + Math.abs(nx0[i])) * EPS + ETA) * (1 + 4 * EPS)
+            val p1 = min[i] * other.min[i]
+            val p2 = min[i] * other.max[i]
+            val p3 = max[i] * other.min[i]
+            val p4 = max[i] * other.max[i]
+            val lo = Math.min(Math.min(p1, p2), Math.min(p3, p4))
+            val hi = Math.max(Math.max(p1, p2), Math.max(p3, p4))
+            nmin[i] = lo - Math.abs(lo) * EPS - ETA
+            nmax[i] = hi + Math.abs(hi) * EPS + ETA
+        }
+        return binary(union, nx0, nr, ncoeff, nmin, nmax, other) { a, b -> a * b }
+    }
+
+    /** Scalar multiplication, addition and noise increment on all forms; see AffineForm.affine. */
+    fun affine(alpha: Double, delta: Double, noise: Double): AffineFormBatch {
+        val n = size
+        val err = DoubleArray(n)
+        val ncoeff = Array(symbols.size) { k ->
+            val a = coeff[k]
+            val c = DoubleArray(n)
+            for (i in 0 until n) {
+                c[i] = a[i] * alpha
+                err[i] += Math.abs(c[i])
+            }
+            c
+        }
+        val absAlpha = Math.abs(alpha)
+        val nx0 = DoubleArray(n)
+        val nr = DoubleArray(n)
+        val nmin = DoubleArray(n)
+        val nmax = DoubleArray(n)
+        for (i in 0 until n) {
+            nx0[i] = x0[i] * alpha + delta
+            nr[i] = (r[i] * absAlpha + noise + (err[i] + 2 * Math.abs(nx0[i])) * EPS + ETA) * (1 + 2 * EPS)
+            val a = min[i] * alpha + delta
+            val b = max[i] * alpha + delta
+            nmin[i] = Math.min(a, b) - noise - (Math.abs(a) + Math.abs(b)) * EPS - ETA
+            nmax[i] = Math.max(a, b) + noise + (Math.abs(a) + Math.abs(b)) * EPS + ETA
+        }
+        val nspecial = arrayOfNulls<AffineForm>(n)
+        for (i in 0 until n) special[i]?.let { nspecial[i] = it.affine(alpha, delta, noise) }
+        return bound(AffineFormBatch(symbols, nx0, nr, ncoeff, nmin, nmax, nspecial))
+    }
+
+    /** Sum of the absolute partial deviations of each form, rounded upwards. */
+    fun radius(): DoubleArray {
+        val rad = DoubleArray(size)
+        for (c in coeff)
+            for (i in rad.indices) rad[i] += Math.abs(c[i])
+        val f = 1 + (symbols.size + 1) * EPS
+        for (i in rad.indices) rad[i] *= f
+        return rad
+    }
+
+    private fun column(symbol: Int): DoubleArray? {
+        val k = Arrays.binarySearch(symbols, symbol)
+        return if (k >= 0) coeff[k] else null
+    }
+
+    /** A binary operation; the special forms of both batches are computed by AffineForm. */
+    private inline fun binary(symbols: IntArray, x0: DoubleArray, r: DoubleArray, coeff: Array<DoubleArray>,
+                               min: DoubleArray, max: DoubleArray, other: AffineFormBatch,
+                               op: (AffineForm, AffineForm) -> AffineForm): AffineFormBatch {
+        val nspecial = arrayOfNulls<AffineForm>(x0.size)
+        for (i in x0.indices)
+            if (special[i] != null || other.special[i] != null) nspecial[i] = op(get(i), other[i])
+        return bound(AffineFormBatch(symbols, x0, r, coeff, min, max, nspecial))
+    }
+
+    companion object {
+        /** Relative machine epsilon: |ulp(x)| <= EPS * |x| for normal x. */
+        private const val EPS = 2.220446049250313E-16 // 2^-52
+        /** Absolute bound of rounding errors in the subnormal range. */
+        private const val ETA = java.lang.Double.MIN_NORMAL
+
+        /** Creates a batch of the given affine forms. */
+        @JvmStatic
+        fun of(forms: List<AffineForm>): AffineFormBatch {
+            val n = forms.size
+            val special = arrayOfNulls<AffineForm>(n)
+            val symbolSet = TreeSet<Int>()
+            for (i in 0 until n) {
+                val f = forms[i]
+                if (f.isEmpty() || f.isReals() || !f.isFinite() || f.min.isNaN() || f.max.isNaN()) special[i] = f
+                else symbolSet.addAll(f.xi.keys)
+            }
+            val symbols = symbolSet.toIntArray()
+            val coeff = Array(symbols.size) { DoubleArray(n) }
+            val x0 = DoubleArray(n)
+            val r = DoubleArray(n)
+            val min = DoubleArray(n)
+            val max = DoubleArray(n)
+            for (i in 0 until n) {
+                if (special[i] != null) continue
+                val f = forms[i]
+                x0[i] = f.x0
+                r[i] = f.r
+                min[i] = f.min
+                max[i] = f.max
+                for ((symbol, c) in f.xi) coeff[Arrays.binarySearch(symbols, symbol)][i] = c
+            }
+            return AffineFormBatch(symbols, x0, r, coeff, min, max, special)
+        }
+
+        /** Restricts the bounds to x0 +- (r + radius), as the constructor of AffineForm. */
+        private fun bound(b: AffineFormBatch): AffineFormBatch {
+            val rad = b.radius()
+            for (i in rad.indices) {
+                val dev = (b.r[i] + rad[i]) * (1 + 2 * EPS)
+                val e = Math.abs(b.x0[i]) * EPS
+                b.min[i] = Math.max(b.min[i], b.x0[i] - dev - e)
+                b.max[i] = Math.min(b.max[i], b.x0[i] + dev + e)
+            }
+            return b
+        }
+
+        /** The sorted union of two sorted arrays. */
+        private fun union(a: IntArray, b: IntArray): IntArray {
+            val u = IntArray(a.size + b.size)
+            var i = 0; var j = 0; var n = 0
+            while (i < a.size || j < b.size) {
+                u[n++] = when {
+                    j == b.size || (i < a.size && a[i] < b[j]) -> a[i++]
+                    i == a.size || b[j] < a[i] -> b[j++]
+                    else -> { j++; a[i++] }
+                }
+            }
+            return u.copyOf(n)
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package jAADD
+
+import kotlinx.coroutines.*
+import java.util.concurrent.CopyOnWriteArrayList
+
+/**
+ * @class AnytimeRange
+ * The range of an AADD that is refined while LP results arrive; see AADD.getRangeAnytime.
+ * current is a valid range from the start on: the join of the bounds of all leaves, where the
+ * leaves not yet solved by LP contribute the bounds of their affine forms.
+ *
+ * The leaves are solved by LP on the default dispatcher. The next leaf is the one whose bounds
+ * are closest to the current min or max, as it most likely tightens the range.
+ * No further LP is started after the deadline, or after cancel().
+ * If LP fails on a leaf, no further LP is started either, and await() throws the failure.
+ *
+ * The listeners are called with each tighter range, in order; they are called from the worker
+ * threads while holding a lock, and must hence return quickly.
+ */
+class AnytimeRange internal constructor(
+        private val bounds: Array<Range>,
+        private val pending: BooleanArray,
+        private val refine: (Int) -> Range,
+        private val deadline: Long,
+        listener: ((Range) -> Unit)?) {
+
+    private val lock = Any()
+    private val listeners = CopyOnWriteArrayList<(Range) -> Unit>()
+    private val job = Job()
+    @Volatile private var failure: Throwable? = null
+
+    /** The range with the LP results known so far. */
+    @Volatile var current: Range = join()
+        private set
+
+    /** True, if all leaves are solved, or no further LP is started; also after a failure of LP. */
+    val isDone: Boolean get() = job.isCompleted
+
+    init {
+        if (listener != null) listeners.add(listener)
+        val failed = CoroutineExceptionHandler { _, e -> synchronized(lock) { if (failure == null) failure = e } }
+        val scope = CoroutineScope(Dispatchers.Default + job + failed)
+        val workers = Math.min(pending.count { it }, Runtime.getRuntime().availableProcessors())
+        repeat(workers) {
+            scope.launch {
+                while (isActive) {
+                    val i = next() ?: break
+                    update(i, refine(i))
+                }
+            }
+        }
+        job.complete()
+    }
+
+    /** Adds a listener that is called with each tighter range. */
+    fun onRefine(listener: (Range) -> Unit) {
+        listeners.add(listener)
+    }
+
+    /**
+     * Waits until all leaves are solved or the deadline is over. @return the final range.
+     * If LP failed on a leaf, it throws the failure, as getRange does; current then is valid, but not final.
+     */
+    fun await(): Range {
+        runBlocking { job.join() }
+        failure?.let { throw it }
+        return current
+    }
+
+    /** Starts no further LP; current remains valid. */
+    fun cancel() = job.cancel()
+
+    /** The pending leaf closest to the current min or max; null if none, or after the deadline. */
+    private fun next(): Int? = synchronized(lock) {
+        if (System.nanoTime() > deadline) return null
+        val r = current
+        var best = -1
+        var bestDist = Double.POSITIVE_INFINITY
+        for (i in pending.indices) {
+            if (!pending[i]) continue
+            val d = Math.min(bounds[i].min - r.min, r.max - bounds[i].max)
+            if (best < 0 || d < bestDist) { best = i; bestDist = d }
+        }
+        if (best < 0) return null
+        pending[best] = false
+        best
+    }
+
+    private fun update(i: Int, r: Range) = synchronized(lock) {
+        bounds[i] = r
+        val joined = join()
+        if (joined != current) {
+            current = joined
+            for (l in listeners) l(joined)
+        }
+    }
+
+    private fun join(): Range {
+        var r = Range.Empty
+        for (b in bounds) r = r.join(b)
+        return r
+    }
+}
@@ -0,0 +1,84 @@
+package jAADD
+
+import kotlinx.coroutines.*
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * @class BranchAndBound
+ * Computes the join of the bounds of leaves and solves LP only for the leaves that can change it.
+ * The incumbents are the smallest min and the largest max of the leaves solved so far, or not to
+ * be solved; LP only tightens the bounds of a leaf, hence a leaf whose bounds lie within the
+ * incumbents cannot change the join and is not solved.
+ *
+ * The pending leaves are solved in the order of the distance of their bounds to the extremes,
+ * by parallel workers on the default dispatcher that share the incumbents atomically.
+ * @param bounds the known bounds of the leaves; replaced by the results of refine.
+ * @param pending true for the leaves to be refined by LP.
+ * @param refine computes the bounds of a leaf by LP.
+ * @param skipped called for each leaf that is not solved.
+ */
+internal class BranchAndBound(private val bounds: Array<Range>,
+                              private val pending: BooleanArray,
+                              private val refine: (Int) -> Range,
+                              private val skipped: () -> Unit) {
+
+    private val lo = AtomicLong(bits(Double.POSITIVE_INFINITY))
+    private val hi = AtomicLong(bits(Double.NEGATIVE_INFINITY))
+
+    /** Solves the leaves that can change the join. @return the join of the bounds of all leaves. */
+    fun run(): Range {
+        var all = Range.Empty
+        for (b in bounds) all = all.join(b)
+        val order = ArrayList<Int>()
+        for (i in bounds.indices) {
+            if (pending[i]) order.add(i)
+            else if (!bounds[i].isEmpty()) improve(bounds[i])
+        }
+        order.sortBy { Math.min(bounds[it].min - all.min, all.max - bounds[it].max) }
+        val next = AtomicInteger()
+        val workers = Math.min(order.size, Runtime.getRuntime().availableProcessors())
+        if (workers > 0) runBlocking(Dispatchers.Default) {
+            repeat(workers) {
+                launch {
+                    while (true) {
+                        val k = next.getAndIncrement()
+                        if (k >= order.size) break
+                        solve(order[k])
+                    }
+                }
+            }
+        }
+        var r = Range.Empty
+        for (b in bounds) r = r.join(b)
+        return r
+    }
+
+    private fun solve(i: Int) {
+        val b = bounds[i]
+        if (b.min >= double(lo.get()) && b.max <= double(hi.get())) {
+            skipped()
+            return
+        }
+        val r = refine(i)
+        bounds[i] = r
+        if (!r.isEmpty()) improve(r)
+    }
+
+    /** Lowers lo and raises hi to the bounds of a leaf. */
+    private fun improve(r: Range) {
+        while (true) {
+            val cur = lo.get()
+            if (!(r.min < double(cur)) || lo.compareAndSet(cur, bits(r.min))) break
+        }
+        while (true) {
+            val cur = hi.get()
+            if (!(r.max > double(cur)) || hi.compareAndSet(cur, bits(r.max))) break
+        }
+    }
+
+    private companion object {
+        fun bits(d: Double) = java.lang.Double.doubleToRawLongBits(d)
+        fun double(l: Long) = java.lang.Double.longBitsToDouble(l)
+    }
+}
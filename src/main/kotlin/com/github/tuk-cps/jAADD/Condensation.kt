@@ -0,0 +1,82 @@
+package jAADD
+
+import java.util.*
+
+/**
+ * @class Condensation
+ * A strategy for the condensation of the partial deviations of affine forms.
+ * In long iterations, each nonlinear operation adds a term, and the maps of partial deviations
+ * grow without limit; this slows down every later operation.
+ * If an operation results in more than AffineForm.maxTerms terms, the strategy AffineForm.condensation
+ * merges the smallest terms; the condensed affine form encloses the original one, but loses the
+ * correlation of the merged terms. The cost is in O(n log n) for n terms, hence bounded by maxTerms.
+ *
+ * Usage:
+ * <pre>
+ *   AffineForm.maxTerms = 32
+ *   AffineForm.condensation = Condensation.IntoRadius
+ * </pre>
+ */
+abstract class Condensation {
+
+    /**
+     * Condenses the partial deviations in place to at most limit terms.
+     * @param xi the partial deviations of a new affine form.
+     * @param limit the maximum number of terms.
+     * @return the amount by which r of the affine form must be increased.
+     */
+    abstract fun condense(xi: HashMap<Int, Double>, limit: Int): Double
+
+    /** Merges the smallest terms into r. */
+    object IntoRadius : Condensation() {
+        override fun condense(xi: HashMap<Int, Double>, limit: Int): Double =
+                removeSmallest(xi, xi.size - Math.max(limit, 0))
+    }
+
+    /** Merges the smallest terms into a single term with a new noise symbol. */
+    object IntoNewSymbol : Condensation() {
+        override fun condense(xi: HashMap<Int, Double>, limit: Int): Double {
+            if (limit < 1) return IntoRadius.condense(xi, limit)
+            val dev = removeSmallest(xi, xi.size - limit + 1)
+            if (dev > 0.0) xi[NoiseVariables.newNoiseVar()] = dev
+            return 0.0
+        }
+    }
+
+    companion object {
+        /**
+         * Removes the terms with the smallest absolute values.
+         * @param xi the partial deviations.
+         * @param count the number of terms to be removed.
+         * @return the sum of the absolute values of the removed terms, rounded upwards.
+         */
+        @JvmStatic
+        fun removeSmallest(xi: HashMap<Int, Double>, count: Int): Double {
+            if (count <= 0) return 0.0
+            if (count >= xi.size) {
+                var sum = 0.0
+                for (v in xi.values) sum = IntervalKernel.addUp(sum, Math.abs(v))
+                xi.clear()
+                return sum
+            }
+            val abs = DoubleArray(xi.size)
+            var k = 0
+            for (v in xi.values) abs[k++] = Math.abs(v)
+            Arrays.sort(abs)
+            // Terms below cut are removed; of the terms equal to cut, as many as needed.
+            val cut = abs[count - 1]
+            var ties = 0
+            for (i in 0 until count) if (abs[i] == cut) ties++
+            var sum = 0.0
+            val it = xi.values.iterator()
+            while (it.hasNext()) {
+                val v = Math.abs(it.next())
+                if (v < cut || (v == cut && ties-- > 0)) {
+                    sum = IntervalKernel.addUp(sum, v)
+                    it.remove()
+                }
+            }
+            return sum
+        }
+    }
+}
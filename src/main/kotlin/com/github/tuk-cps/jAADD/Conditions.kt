@@ -4,6 +4,7 @@ import com.google.gson.GsonBuilder
 import com.google.gson.reflect.TypeToken
 import java.io.FileWriter
 import java.util.*
+import java.util.concurrent.ConcurrentHashMap
 import kotlin.collections.HashMap
 
 /**
@@ -18,6 +19,8 @@ import kotlin.collections.HashMap
  *
  * The unknown Boolean variables are saved in a hashmap Xb and shared among all AADD/BDD.
  * The unknown Boolean variables are modeled by the enum BoolX.
+ *
+ * New conditions may be added concurrently, e.g. by the parallel constraint propagation.
  */
 
 object Conditions {
@@ -25,15 +28,16 @@ object Conditions {
     enum class XBool { True, False, X, AF }
 
     /** The set of all conditions is saved in the HashMap X */
-    internal var X = HashMap<Int, Condition>()
+    internal var X = ConcurrentHashMap<Int, Condition>()
     internal var topIndex = 0 // last index used for increasing index selection.
     internal var btmIndex = 0 // last index used for decreasing index selection.
 
     @JvmStatic
+    @Synchronized
     fun init() {
         topIndex = 0
         btmIndex = 0
-        X = HashMap()
+        X = ConcurrentHashMap()
     }
 
     /** States of the Boolean decision variables including X for unknown and AF for a constraint */
@@ -60,6 +64,7 @@ object Conditions {
      * @return index of the new condition.
      */
     @JvmStatic
+    @Synchronized
     fun newConstraint(c: AffineForm, name: String = ""): Int {
         X[++topIndex] = Condition(c, name)
         return topIndex
@@ -70,6 +75,7 @@ object Conditions {
      * @return index of the new condition.
      */
     @JvmStatic
+    @Synchronized
     fun newVariable(name: String = ""): Int {
         X[++topIndex] = Condition(XBool.X, name)
         return topIndex
@@ -77,6 +83,7 @@ object Conditions {
 
     /** Adds a new constraint at the bottom of the indexes */
     @JvmStatic
+    @Synchronized
     fun newBtmConstr(c: AffineForm, name: String = ""): Int {
         X[--btmIndex] = Condition(c, name)
         return btmIndex
@@ -133,7 +140,7 @@ object Conditions {
         val empMapType = object : TypeToken<HashMap<Int, Condition>>() {}.type
         val file = java.io.FileReader(filename)
         X.clear()
-        X = gson.fromJson(file, empMapType)
+        X = ConcurrentHashMap(gson.fromJson<HashMap<Int, Condition>>(file, empMapType))
 
         X.forEach {
             k,_ -> topIndex=Math.max(k, topIndex)
@@ -71,7 +71,7 @@ open class DD<ValT>(index: Int, T: DD<ValT>?, F: DD<ValT>?, value: ValT?, status
     fun numLeaves(): Int =
             if (isLeaf) 1 else T!!.numLeaves() + F!!.numLeaves()
 
-    fun numInfeasible(): Int =
+    open fun numInfeasible(): Int =
             if (isLeaf) { if (isInfeasible) 1 else 0 } else T!!.numInfeasible() + F!!.numInfeasible()
 
     /** Returns the height of the tree.  */
@@ -0,0 +1,98 @@
+package jAADD
+
+import kotlin.math.PI
+
+/**
+ * The kind of the affine approximation of elementary functions; see AffineForm.approximation.
+ *  * CHEBYSHEV uses the slope of the secant; it minimizes the new noise term.
+ *  * MIN_RANGE uses the smallest slope of the function; it minimizes the range of the result.
+ */
+enum class Approximation { CHEBYSHEV, MIN_RANGE }
+
+/**
+ * @class Elementary
+ * An elementary function f with its derivative, as needed for the affine approximations of AffineForm.
+ * solve(alpha, a, b) returns the points in [a, b] where f'(x) = alpha; it may return more points
+ * of [a, b], as they are only used to evaluate f and f(x) - alpha*x there.
+ */
+internal abstract class Elementary {
+    abstract fun f(x: Double): Double
+    abstract fun df(x: Double): Double
+    abstract fun solve(alpha: Double, a: Double, b: Double): DoubleArray
+
+    object Sin : Elementary() {
+        override fun f(x: Double) = Math.sin(x)
+        override fun df(x: Double) = Math.cos(x)
+        override fun solve(alpha: Double, a: Double, b: Double) =
+                if (Math.abs(alpha) > 1.0) NONE
+                else periodic(a, b, 2 * PI, Math.acos(alpha), -Math.acos(alpha))
+    }
+
+    object Cos : Elementary() {
+        override fun f(x: Double) = Math.cos(x)
+        override fun df(x: Double) = -Math.sin(x)
+        override fun solve(alpha: Double, a: Double, b: Double) =
+                if (Math.abs(alpha) > 1.0) NONE
+                else periodic(a, b, 2 * PI, Math.asin(-alpha), PI - Math.asin(-alpha))
+    }
+
+    /** Tangent; the interval must not contain a pole. */
+    object Tan : Elementary() {
+        override fun f(x: Double) = Math.tan(x)
+        override fun df(x: Double) = 1.0 / (Math.cos(x) * Math.cos(x))
+        override fun solve(alpha: Double, a: Double, b: Double) =
+                if (alpha < 1.0) NONE
+                else periodic(a, b, PI, Math.atan(Math.sqrt(alpha - 1.0)), -Math.atan(Math.sqrt(alpha - 1.0)))
+    }
+
+    object Atan : Elementary() {
+        override fun f(x: Double) = Math.atan(x)
+        override fun df(x: Double) = 1.0 / (1.0 + x * x)
+        override fun solve(alpha: Double, a: Double, b: Double) =
+                if (alpha <= 0.0 || alpha > 1.0) NONE
+                else within(a, b, Math.sqrt(1.0 / alpha - 1.0), -Math.sqrt(1.0 / alpha - 1.0))
+    }
+
+    /** Square root; the interval must be in [0, +inf). */
+    object Sqrt : Elementary() {
+        override fun f(x: Double) = Math.sqrt(x)
+        override fun df(x: Double) = 0.5 / Math.sqrt(x)
+        override fun solve(alpha: Double, a: Double, b: Double) =
+                if (alpha <= 0.0) NONE else within(a, b, 1.0 / (4.0 * alpha * alpha))
+    }
+
+    /** x^p for p != 0, 1; for p not integer, the interval must be in [0, +inf). */
+    class Pow(val p: Double) : Elementary() {
+        override fun f(x: Double) = Math.pow(x, p)
+        override fun df(x: Double) = p * Math.pow(x, p - 1.0)
+        override fun solve(alpha: Double, a: Double, b: Double): DoubleArray {
+            if (alpha == 0.0) return if (p > 1.0) within(a, b, 0.0) else NONE
+            val t = Math.pow(Math.abs(alpha / p), 1.0 / (p - 1.0))
+            return within(a, b, t, -t)
+        }
+    }
+
+    companion object {
+        private val NONE = DoubleArray(0)
+
+        /** The points of xs in [a, b]. */
+        private fun within(a: Double, b: Double, vararg xs: Double): DoubleArray {
+            var n = 0
+            for (x in xs) if (x >= a && x <= b) xs[n++] = x
+            return if (n == 0) NONE else xs.copyOf(n)
+        }
+
+        /** The points base + k*period in [a, b], for all integers k. */
+        private fun periodic(a: Double, b: Double, period: Double, vararg bases: Double): DoubleArray {
+            var xs = NONE
+            for (base in bases) {
+                var x = base + Math.ceil((a - base) / period) * period
+                while (x <= b) {
+                    if (x >= a) xs = xs.copyOf(xs.size + 1).also { it[xs.size] = x }
+                    x += period
+                }
+            }
+            return xs
+        }
+    }
+}
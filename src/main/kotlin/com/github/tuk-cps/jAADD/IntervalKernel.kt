@@ -0,0 +1,109 @@
+package jAADD
+
+/**
+ * @class IntervalKernel
+ * The primitive interval operations used by Range.
+ * The kernel is stateless and works on doubles only; the bounds of a result are returned by
+ * separate functions for the lower and upper bound, so no boxing or temporary objects are needed.
+ *
+ * The bounds are rounded outwards (directed rounding): if a bound is not exact, the lower bound is
+ * rounded down by Math.nextDown and the upper bound up by Math.nextUp. The rounding error of
+ * + and * is computed exactly with the error-free transformations TwoSum and TwoProduct (Dekker);
+ * hence, exact results such as scalars stay exact, and inexact ones are widened by at most one ulp.
+ * Bounds that are infinite, NaN or +-Double.MAX_VALUE are not rounded, as +-Double.MAX_VALUE
+ * represents the unbounded Reals in Range.
+ */
+internal object IntervalKernel {
+
+    // Bounds of |x| within which Dekker's splitting neither overflows nor underflows.
+    private const val SPLIT_MAX = 6.69692879491417e+299 // 2^996
+    private const val SPLIT_MIN = 2.004168360008973e-292 // 2^-969
+    private const val SPLITTER = 134217729.0 // 2^27 + 1
+
+    /** Lower bound of x + y. */
+    fun addDown(x: Double, y: Double): Double {
+        val s = x + y
+        if (!isRoundable(s)) return s
+        return if (sumError(x, y, s) < 0.0) Math.nextDown(s) else s
+    }
+
+    /** Upper bound of x + y. */
+    fun addUp(x: Double, y: Double): Double {
+        val s = x + y
+        if (!isRoundable(s)) return s
+        return if (sumError(x, y, s) > 0.0) Math.nextUp(s) else s
+    }
+
+    /** Lower bound of x * y. */
+    fun mulDown(x: Double, y: Double): Double {
+        val p = x * y
+        if (!isRoundable(p) || x == 0.0 || y == 0.0) return p
+        if (!isSplittable(x) || !isSplittable(y) || !isSplittable(p)) return Math.nextDown(p)
+        return if (productError(x, y, p) < 0.0) Math.nextDown(p) else p
+    }
+
+    /** Upper bound of x * y. */
+    fun mulUp(x: Double, y: Double): Double {
+        val p = x * y
+        if (!isRoundable(p) || x == 0.0 || y == 0.0) return p
+        if (!isSplittable(x) || !isSplittable(y) || !isSplittable(p)) return Math.nextUp(p)
+        return if (productError(x, y, p) > 0.0) Math.nextUp(p) else p
+    }
+
+    /**
+     * Lower bound of the product of the intervals [a, b] and [c, d].
+     * Only the smallest of the four products is rounded, or the smallest ones if they are equal.
+     */
+    fun mulLo(a: Double, b: Double, c: Double, d: Double): Double {
+        val m = min(min(a * c, a * d), min(b * c, b * d))
+        var lo = Double.NaN
+        if (java.lang.Double.compare(a * c, m) == 0) lo = min(lo, mulDown(a, c))
+        if (java.lang.Double.compare(a * d, m) == 0) lo = min(lo, mulDown(a, d))
+        if (java.lang.Double.compare(b * c, m) == 0) lo = min(lo, mulDown(b, c))
+        if (java.lang.Double.compare(b * d, m) == 0) lo = min(lo, mulDown(b, d))
+        return lo
+    }
+
+    /**
+     * Upper bound of the product of the intervals [a, b] and [c, d].
+     * Only the largest of the four products is rounded, or the largest ones if they are equal.
+     */
+    fun mulHi(a: Double, b: Double, c: Double, d: Double): Double {
+        val m = max(max(a * c, a * d), max(b * c, b * d))
+        var hi = Double.NEGATIVE_INFINITY
+        if (java.lang.Double.compare(a * c, m) == 0) hi = max(hi, mulUp(a, c))
+        if (java.lang.Double.compare(a * d, m) == 0) hi = max(hi, mulUp(a, d))
+        if (java.lang.Double.compare(b * c, m) == 0) hi = max(hi, mulUp(b, c))
+        if (java.lang.Double.compare(b * d, m) == 0) hi = max(hi, mulUp(b, d))
+        return hi
+    }
+
+    /**
+     * Minimum and maximum in the order of java.lang.Double.compare, as Collections.min/max on boxed
+     * doubles: NaN is greater than all other values, and -0.0 is less than 0.0.
+     */
+    fun min(x: Double, y: Double) = if (java.lang.Double.compare(x, y) <= 0) x else y
+    fun max(x: Double, y: Double) = if (java.lang.Double.compare(x, y) >= 0) x else y
+
+    private fun isRoundable(v: Double) = !v.isNaN() && !v.isInfinite() && Math.abs(v) != Double.MAX_VALUE
+
+    private fun isSplittable(v: Double) = Math.abs(v) < SPLIT_MAX && Math.abs(v) > SPLIT_MIN
+
+    /** Exact error of s = x + y, i.e. x + y - s (TwoSum, Knuth). */
+    private fun sumError(x: Double, y: Double, s: Double): Double {
+        val yv = s - x
+        val xv = s - yv
+        return (x - xv) + (y - yv)
+    }
+
+    /** Exact error of p = x * y, i.e. x * y - p (TwoProduct, Dekker). */
+    private fun productError(x: Double, y: Double, p: Double): Double {
+        var t = SPLITTER * x
+        val xh = t - (t - x)
+        val xl = x - xh
+        t = SPLITTER * y
+        val yh = t - (t - y)
+        val yl = y - yh
+        return ((xh * yh - p) + xh * yl + xl * yh) + xl * yl
+    }
+}
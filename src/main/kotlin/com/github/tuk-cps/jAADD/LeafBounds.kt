@@ -0,0 +1,48 @@
+package jAADD
+
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * @class LeafBounds
+ * The bounds of a leaf of an AADD, as computed by the LP solver under the conditions of a path.
+ * Affine forms and AADD are immutable, and a leaf may be shared by several paths and diagrams;
+ * hence, the bounds are kept here, per path, and not written into the affine form of the leaf.
+ * Range.Empty marks a path that is infeasible.
+ *
+ * The store is thread-safe. Concurrent calls of getRange may compute the bounds of a path twice;
+ * the first result is kept.
+ */
+internal class LeafBounds {
+    private val bounds = ConcurrentHashMap<Path, Range>()
+
+    /** The bounds under the conditions of path, or null if not yet computed. */
+    operator fun get(path: Path): Range? = bounds[path]
+
+    /** Stores the bounds of a path, if not yet stored. @return the stored bounds. */
+    fun put(path: Path, range: Range): Range = bounds.putIfAbsent(path, range) ?: range
+
+    /** The join of the bounds of all known paths; null if none is known. */
+    fun join(): Range? {
+        var r: Range? = null
+        for (b in bounds.values) r = r?.join(b) ?: b
+        return r
+    }
+
+    /** True, if bounds are known and all known paths are infeasible. */
+    fun allInfeasible(): Boolean = bounds.isNotEmpty() && bounds.values.all { it.isEmpty() }
+
+    /**
+     * The conditions on a path from the root to a leaf: the indexes of the conditions
+     * and whether they are true (ge) or false.
+     */
+    class Path(indexes: IntArray, ge: BooleanArray, len: Int) {
+        val indexes: IntArray = indexes.copyOf(len)
+        val ge: BooleanArray = ge.copyOf(len)
+        private val hash = 31 * this.indexes.contentHashCode() + this.ge.contentHashCode()
+
+        override fun hashCode() = hash
+
+        override fun equals(other: Any?) =
+                other is Path && hash == other.hash && indexes contentEquals other.indexes && ge contentEquals other.ge
+    }
+}
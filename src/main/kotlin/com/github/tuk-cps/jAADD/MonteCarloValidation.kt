@@ -0,0 +1,140 @@
+package jAADD
+
+import java.util.*
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.RecursiveTask
+
+/**
+ * The class MonteCarloValidation cross-checks the bounds computed by getRange() by sampling.
+ * It draws random values for the noise symbols in [-1, 1] and for the boolean variables,
+ * evaluates the AADD and its conditions with an AADDBatchEvaluator, and checks that each
+ * sample is within [min, max] of the range.
+ *
+ * A sample evaluates to the affine form of its leaf; the modeled value is within value +/- r.
+ * Hence, a sample is counted as a violation only if [value-r, value+r] does not intersect the
+ * range. Samples on empty, infeasible or unbounded leaves are counted as undefined.
+ *
+ * The sampling runs on a fork/join pool. Each task has its own SplittableRandom, split from
+ * the seed at fixed sample counts; hence, the result is reproducible for a given seed.
+ * Statistics are merged from the tasks; no sample is kept in memory.
+ *
+ * @param aadd the AADD to be validated.
+ * @param seed the seed of the random numbers.
+ */
+class MonteCarloValidation(val aadd: AADD, val seed: Long = 0L) {
+
+    /** Relative tolerance for the check of the bounds. */
+    var tolerance = 1e-9
+
+    private val evaluator = AADDBatchEvaluator(aadd)
+
+    /**
+     * Streamed statistics of the samples.
+     * Mean and variance are computed by Welford's method and merged by Chan's formula.
+     */
+    class Report internal constructor(val range: Range) {
+        var samples = 0L
+            internal set
+        var undefined = 0L
+            internal set
+        var violations = 0L
+            internal set
+        var observedMin = Double.POSITIVE_INFINITY
+            internal set
+        var observedMax = Double.NEGATIVE_INFINITY
+            internal set
+        var mean = 0.0
+            internal set
+        private var m2 = 0.0
+
+        /** The variance of the defined samples. */
+        val variance: Double get() = if (samples - undefined > 1) m2 / (samples - undefined - 1) else 0.0
+
+        /** Ratio of the observed width to the width of the range; 1.0 means tight bounds. */
+        val tightness: Double get() {
+            if (samples == undefined) return 0.0
+            val width = range.max - range.min
+            return if (width > 0.0) (observedMax - observedMin) / width else 1.0
+        }
+
+        internal fun add(v: Double, r: Double, tol: Double) {
+            samples++
+            if (v.isNaN()) { undefined++; return }
+            if (v + r < range.min - tol || v - r > range.max + tol) violations++
+            if (v < observedMin) observedMin = v
+            if (v > observedMax) observedMax = v
+            val n = samples - undefined
+            val delta = v - mean
+            mean += delta / n
+            m2 += delta * (v - mean)
+        }
+
+        internal fun merge(other: Report) {
+            val na = samples - undefined
+            val nb = other.samples - other.undefined
+            if (nb > 0) {
+                val delta = other.mean - mean
+                val n = na + nb
+                mean += delta * nb / n
+                m2 += other.m2 + delta * delta * na * nb / n
+            }
+            samples += other.samples
+            undefined += other.undefined
+            violations += other.violations
+            observedMin = Math.min(observedMin, other.observedMin)
+            observedMax = Math.max(observedMax, other.observedMax)
+        }
+
+        override fun toString(): String =
+                "Range $range, $samples samples, $violations violations, $undefined undefined, " +
+                "observed [$observedMin; $observedMax], mean $mean, tightness " + String.format("%.3f", tightness)
+    }
+
+    /**
+     * Draws the given number of samples and returns the statistics.
+     * The range of the AADD is computed once before sampling.
+     */
+    @JvmOverloads
+    fun run(samples: Long, pool: ForkJoinPool = ForkJoinPool.commonPool()): Report {
+        require(samples >= 0) { "number of samples must be >= 0" }
+        val range = aadd.getRange()
+        val tol = tolerance * Math.max(1.0, Math.max(Math.abs(range.min), Math.abs(range.max)))
+        return pool.invoke(SampleTask(range, tol, SplittableRandom(seed), 0, samples))
+    }
+
+    /** Splits the samples until they are below taskSize; then samples block by block. */
+    private inner class SampleTask(val range: Range, val tol: Double, val rnd: SplittableRandom,
+                                   val from: Long, val to: Long) : RecursiveTask<Report>() {
+        override fun compute(): Report {
+            if (to - from > taskSize) {
+                val mid = (from + to) ushr 1
+                val right = SampleTask(range, tol, rnd.split(), mid, to)
+                right.fork()
+                val report = SampleTask(range, tol, rnd, from, mid).compute()
+                report.merge(right.join())
+                return report
+            }
+            val report = Report(range)
+            val block = Math.min(AADDBatchEvaluator.blockSize.toLong(), to - from).toInt()
+            val eps = Array(evaluator.symbols.size) { DoubleArray(block) }
+            val bools = Array(evaluator.boolVars.size) { BooleanArray(block) }
+            val values = DoubleArray(block)
+            val errors = DoubleArray(block)
+            var start = from
+            while (start < to) {
+                val len = Math.min(block.toLong(), to - start).toInt()
+                for (col in eps) for (j in 0 until len) col[j] = rnd.nextDouble(-1.0, 1.0)
+                for (col in bools) for (j in 0 until len) col[j] = rnd.nextBoolean()
+                evaluator.evaluate(eps, values, 0, len, bools, errors)
+                for (j in 0 until len) report.add(values[j], errors[j], tol)
+                start += len
+            }
+            return report
+        }
+    }
+
+    companion object {
+        /** Samples per fork/join task. */
+        var taskSize = 65536L
+    }
+}
@@ -21,9 +21,11 @@ object NoiseVariables {
     internal val names = HashMap<Int, String>()
 
     /** Returns a new index of a noise variable. */
+    @Synchronized
     fun newNoiseVar(): Int = ++maxIndex
 
     /** Returns a new noise variable with name. */
+    @Synchronized
     fun noiseVar(n: String): Int {
         for ((index, name) in NoiseVariables.names)
             if (n == name) return index
@@ -1,7 +1,5 @@
 package jAADD
 
-import java.util.*
-
 /**
  * The package jAADD implements an Affine Arithmetic Decision Diagram.
  *
@@ -11,8 +9,9 @@ import java.util.*
 /**
  * @class Range
  * A class that is a range from a lower to an upper bound of the Reals, i.e. an interval data type.
+ * Ranges are immutable; hence, the constants Empty, Reals and RealsNaN can be shared.
  */
-open class Range(var min: Double, var max: Double) :
+open class Range(val min: Double, val max: Double) :
         ClosedFloatingPointRange<Double>,
         Cloneable {
 
@@ -43,34 +42,7 @@ open class Range(var min: Double, var max: Double) :
     internal constructor(r: ClosedFloatingPointRange<Double>) : this(r.start, r.endInclusive)
 
     /** Constructor that creates a range of a specific kind  */
-    internal constructor(kind: Kind) : this(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY) {
-        when(kind) {
-            Kind.EMPTY  -> setEmpty()
-            Kind.SCALAR -> { min = 0.0; max = 0.0 }
-            Kind.RANGE  -> setReal()
-            Kind.REALS   -> setReal()
-            Kind.REALNaN-> setRealNaN()
-            Kind.NaN    -> setRealNaN()
-        }
-    }
-
-    /** The range has no restriction. The value can be any number from the reals.*/
-    fun setReal() {
-        min = -Double.MAX_VALUE
-        max = Double.MAX_VALUE
-    }
-
-    /** The range has no restriction. The value can be any number from the reals or NaN. */
-    fun setRealNaN() {
-        min = Double.NEGATIVE_INFINITY
-        max = Double.POSITIVE_INFINITY
-    }
-
-    /** The range includes no numbers from the Reals; empty set.  */
-    fun setEmpty() {
-        min = Double.MAX_VALUE
-        max = -Double.MAX_VALUE
-    }
+    internal constructor(kind: Kind) : this(lowerBound(kind), upperBound(kind))
 
     /** Checks if the range is of finite kind */
     fun isFinite() = (min != Double.NEGATIVE_INFINITY) && (max != Double.POSITIVE_INFINITY)
@@ -92,20 +64,23 @@ open class Range(var min: Double, var max: Double) :
     fun isTrap(other: Range)   = isTrap() || other.isTrap()
     fun isTrap(other: Double)  = isEmpty() || other.isInfinite()
 
+    /*
+     * The arithmetic operations compute the bounds with the primitive operations of IntervalKernel;
+     * inexact bounds are rounded outwards.
+     */
     operator fun plus(other: Range)  =
-            Range(min + other.min, max + other.max)
+            Range(IntervalKernel.addDown(min, other.min), IntervalKernel.addUp(max, other.max))
 
     operator fun minus(other: Range)  =
-            Range(this.min-other.max, this.max-other.min)
+            Range(IntervalKernel.addDown(this.min, -other.max), IntervalKernel.addUp(this.max, -other.min))
             // Range(Math.min(this.min-other.max, this.max-other.min), Math.max(this.min-other.max, this.max-other.min))
 
     open operator fun unaryMinus() =
             Range(Math.min(-max, -min), Math.max(-max, -min))
 
-    operator fun times(other: Range): Range {
-        val iaMult = Arrays.asList(min * other.min, min * other.max, max * other.min, max * other.max)
-        return Range(Collections.min(iaMult), Collections.max(iaMult))
-    }
+    operator fun times(other: Range) =
+            Range(IntervalKernel.mulLo(min, max, other.min, other.max),
+                  IntervalKernel.mulHi(min, max, other.min, other.max))
 
     infix fun join(other: Range): Range {
         if (isFinite() && other.isFinite())
@@ -126,6 +101,21 @@ open class Range(var min: Double, var max: Double) :
         @JvmField val Empty = Range(Kind.EMPTY)
         @JvmField val Reals  = Range(Kind.REALS)
         @JvmField val RealsNaN = Range(Kind.REALNaN)
+
+        /** The bounds of a range of a specific kind; see Kind. */
+        private fun lowerBound(kind: Kind) = when (kind) {
+            Kind.EMPTY -> Double.MAX_VALUE
+            Kind.SCALAR -> 0.0
+            Kind.RANGE, Kind.REALS -> -Double.MAX_VALUE
+            Kind.REALNaN, Kind.NaN -> Double.NEGATIVE_INFINITY
+        }
+
+        private fun upperBound(kind: Kind) = when (kind) {
+            Kind.EMPTY -> -Double.MAX_VALUE
+            Kind.SCALAR -> 0.0
+            Kind.RANGE, Kind.REALS -> Double.MAX_VALUE
+            Kind.REALNaN, Kind.NaN -> Double.POSITIVE_INFINITY
+        }
     }
 
     override fun equals(other: Any?): Boolean {
@@ -0,0 +1,79 @@
+package jAADD
+
+/**
+ * @class RangeOptions
+ * Options of AADD.getRange(options): the effort spent on LP to tighten the bounds of the leaves.
+ *  *  INTERVAL uses the bounds of the affine forms only and solves no LP.
+ *  *  THRESHOLD solves LP for the leaves whose radius is above threshold; getRange() uses it with AADD.LPCallTh.
+ *  *  FULL solves LP for all leaves that are not scalar.
+ *  *  TIME_BOXED is as THRESHOLD, but starts no further LP after timeoutMillis.
+ * LP is only solved for leaves with linear conditions on their path.
+ * epsilon, maxUlps and cutOff are the parameters of the simplex solver. Bounds computed with the
+ * default parameters are kept per path and reused by later calls, also with other options.
+ * With branchAndBound, getRange skips the LP of leaves whose bounds cannot change the range;
+ * see BranchAndBound. The range is the same; the report lists these leaves as skipped.
+ *
+ * Usage:
+ * <pre>
+ *   val cheap = a.getRange(RangeOptions.interval()).range
+ *   val report = a.getRange(RangeOptions.timeBoxed(100))
+ *   val exact = a.getRange(RangeOptions.full().withBranchAndBound()).range
+ * </pre>
+ */
+class RangeOptions @JvmOverloads constructor(
+        val tier: Tier,
+        val threshold: Double = AADD.LPCallTh,
+        val timeoutMillis: Long = 0,
+        val epsilon: Double = DEFAULT_EPSILON,
+        val maxUlps: Int = DEFAULT_MAX_ULPS,
+        val cutOff: Double = DEFAULT_CUT_OFF,
+        val branchAndBound: Boolean = false) {
+
+    enum class Tier { INTERVAL, THRESHOLD, FULL, TIME_BOXED }
+
+    init {
+        require(tier != Tier.TIME_BOXED || timeoutMillis > 0) { "time-boxed LP needs a timeout > 0" }
+    }
+
+    /** The same options, with branch-and-bound. */
+    fun withBranchAndBound() = RangeOptions(tier, threshold, timeoutMillis, epsilon, maxUlps, cutOff, true)
+
+    /** True, if the results of the simplex solver are kept; see LeafBounds. */
+    internal val keepsBounds: Boolean
+        get() = epsilon == DEFAULT_EPSILON && maxUlps == DEFAULT_MAX_ULPS && cutOff == DEFAULT_CUT_OFF
+
+    /** The deadline in System.nanoTime() of a call that starts now; Long.MAX_VALUE if not time-boxed. */
+    internal fun deadline(): Long =
+            if (tier == Tier.TIME_BOXED) System.nanoTime() + timeoutMillis * 1_000_000 else Long.MAX_VALUE
+
+    /** True, if a leaf with the given radius is refined by LP. */
+    internal fun refines(radius: Double): Boolean = when (tier) {
+        Tier.INTERVAL -> false
+        Tier.FULL -> radius > 0.0
+        Tier.THRESHOLD, Tier.TIME_BOXED -> radius > threshold
+    }
+
+    companion object {
+        /** Default parameters of the simplex solver. */
+        const val DEFAULT_EPSILON = 1.0e-3
+        const val DEFAULT_MAX_ULPS = 100
+        const val DEFAULT_CUT_OFF = 1.0e-10
+
+        /** Bounds of the affine forms only. */
+        @JvmStatic
+        fun interval() = RangeOptions(Tier.INTERVAL)
+
+        /** LP on the leaves with a radius above threshold. */
+        @JvmStatic @JvmOverloads
+        fun threshold(threshold: Double = AADD.LPCallTh) = RangeOptions(Tier.THRESHOLD, threshold)
+
+        /** LP on all leaves. */
+        @JvmStatic
+        fun full() = RangeOptions(Tier.FULL)
+
+        /** LP on the leaves with a radius above threshold, started within timeoutMillis. */
+        @JvmStatic @JvmOverloads
+        fun timeBoxed(timeoutMillis: Long, threshold: Double = AADD.LPCallTh) =
+                RangeOptions(Tier.TIME_BOXED, threshold, timeoutMillis)
+    }
+}
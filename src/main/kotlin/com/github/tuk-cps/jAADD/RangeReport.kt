@@ -0,0 +1,50 @@
+package jAADD
+
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * @class RangeReport
+ * The result of AADD.getRange(options): the range, the leaves refined by LP in this call,
+ * and the number of leaves that are not scalar, have conditions on their path, and were not refined
+ * because of the tier of the options or because the time was up.
+ * Leaves whose bounds were known from an earlier call are neither refined nor skipped.
+ */
+class RangeReport internal constructor(val range: Range, val refined: List<Refined>, val skipped: Int) {
+
+    /**
+     * A leaf refined by LP under the conditions on its path.
+     * @param indexes the indexes of the conditions from the root to the leaf.
+     * @param ge the values of the conditions, true for >= 0.
+     * @param before the bounds of the affine form of the leaf.
+     * @param after the bounds computed by LP; empty if the path is infeasible.
+     */
+    class Refined(val leaf: AADD, val indexes: IntArray, val ge: BooleanArray, val before: Range, val after: Range)
+
+    /** Number of leaves whose paths were found infeasible. */
+    val infeasible: Int get() = refined.count { it.after.isEmpty() }
+
+    override fun toString() =
+            "$range (refined: ${refined.size}, infeasible: $infeasible, skipped: $skipped)"
+
+    /** Collects the report while the leaves are computed concurrently. */
+    internal class Collector(val options: RangeOptions) {
+        private val deadline = options.deadline()
+        private val refined = ConcurrentLinkedQueue<Refined>()
+        private val skipped = AtomicInteger()
+
+        /** True, if a leaf with the given radius is refined by LP now. */
+        fun refines(radius: Double): Boolean =
+                options.refines(radius) && (deadline == Long.MAX_VALUE || System.nanoTime() < deadline)
+
+        fun refined(leaf: AADD, path: LeafBounds.Path, before: Range, after: Range) {
+            refined.add(Refined(leaf, path.indexes.copyOf(), path.ge.copyOf(), before, after))
+        }
+
+        fun skipped() {
+            skipped.incrementAndGet()
+        }
+
+        fun report(range: Range) = RangeReport(range, ArrayList(refined), skipped.get())
+    }
+}
@@ -51,8 +51,11 @@ public class jAADDTutorial {
             vol = vol.times(AADD.scalar(4.0/3.0));
             System.out.println("Volume = " + vol);
             System.out.println("Volume = " + vol);
-            assertEquals(10*10*10*3.142*4/3, vol.getValue().getMax());
-            assertEquals(3.141*4/3, vol.getValue().getMin());
+            // The bounds are rounded outwards, by at most one ulp.
+            double max = 10*10*10*3.142*4/3;
+            double min = 3.141*4/3;
+            assertTrue(vol.getValue().getMax() >= max && vol.getValue().getMax() <= Math.nextUp(max));
+            assertTrue(vol.getValue().getMin() <= min && vol.getValue().getMin() >= Math.nextDown(min));
         }
 
         @Test
@@ -5,6 +5,7 @@
 package jAADDcli;
 
 import exprParser.ExprParser;
+import exprParser.ExprScript;
 import  exprParser.ExprError;
 import  exprParser.ParseError;
 import  java.io.*;
@@ -35,9 +36,13 @@ public class jAADDcli {
                     System.out.println("      fun  id := expression  assigns expression as function to id.");
                     System.out.println("      expression             evaluates expression and prints result.");
                     System.out.println("      var_name               any valid identifier, initially unconstrained +/- infinity.");
+                    System.out.println("      load file              parses and evaluates a script file, one statement per line.");
                     System.out.println("      exit                   terminates the tool.");
                 } else if (input.equals("exit")) {
                     return;
+                } else if (input.startsWith("load ")) {
+                    ExprScript s = p.evalScript(new File(input.substring(5).trim()));
+                    System.out.println("   Loaded " + s.getStatements().size() + " statements in " + s.getLevels().size() + " levels.");
                 }
                 else {
                     System.out.println("   Result: " + p.eval(input));
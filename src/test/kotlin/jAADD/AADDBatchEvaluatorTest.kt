@@ -0,0 +1,60 @@
+package jAADD
+
+import jAADD.AADD.Companion.range
+import jAADD.AADD.Companion.scalar
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class AADDBatchEvaluatorTest {
+
+    /** A leaf is evaluated as x0 + sum xi*ei for each sample. */
+    @Test
+    fun leafEvaluation() {
+        val a = range(1.0, 3.0, -1) // 2 + 1*e
+        val eval = AADDBatchEvaluator(a)
+        assertEquals(1, eval.symbols.size)
+        val eps = arrayOf(doubleArrayOf(-1.0, 0.0, 0.5, 1.0))
+        val values = DoubleArray(4)
+        eval.evaluate(eps, values)
+        assertEquals(1.0, values[0], 1e-12)
+        assertEquals(2.0, values[1], 1e-12)
+        assertEquals(2.5, values[2], 1e-12)
+        assertEquals(3.0, values[3], 1e-12)
+    }
+
+    /** Each sample follows the condition path of the AADD to its leaf. */
+    @Test
+    fun pathEvaluation() {
+        val a = range(0.0, 4.0, -1)  // 2 + 2*e
+        val b = (a gt scalar(2.0)).ite(a * 2.0, a)
+        val eval = AADDBatchEvaluator(b)
+        assertEquals(2, eval.numLeaves)
+        val eps = arrayOf(doubleArrayOf(-1.0, -0.5, 0.5, 1.0))
+        val values = DoubleArray(4)
+        eval.evaluate(eps, values)
+        assertEquals(0.0, values[0], 1e-9)
+        assertEquals(1.0, values[1], 1e-9)
+        assertEquals(6.0, values[2], 1e-9)
+        assertEquals(8.0, values[3], 1e-9)
+    }
+
+    /** The parallel evaluation returns the same values as the sequential one. */
+    @Test
+    fun parallelEvaluation() {
+        val a = range(0.0, 4.0, -1)
+        val c = range(1.0, 2.0, -1)
+        val b = (a gt scalar(1.0)).ite(a * c, a - c)
+        val eval = AADDBatchEvaluator(b)
+        val n = 100000
+        val rnd = java.util.Random(1)
+        val eps = Array(eval.symbols.size) { DoubleArray(n) { 2.0 * rnd.nextDouble() - 1.0 } }
+        val seq = DoubleArray(n)
+        val par = DoubleArray(n)
+        eval.evaluate(eps, seq)
+        eval.evaluateParallel(eps, par)
+        for (j in 0 until n) assertEquals(seq[j], par[j])
+        val r = b.getRange()
+        for (j in 0 until n) assertTrue(seq[j] >= r.min - 0.1 && seq[j] <= r.max + 0.1)
+    }
+}
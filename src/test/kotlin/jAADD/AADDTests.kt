@@ -52,6 +52,13 @@ internal class AADDTest {
         val f = d.plus(e)
         f.getRange()
         Assertions.assertEquals(1, f.numInfeasible())
+
+        // Later operations drop the leaf whose path LP found infeasible.
+        val g = f + scalar(1.0)
+        Assertions.assertEquals(f.numLeaves() - 1, g.numLeaves())
+        Assertions.assertEquals(0, g.numInfeasible())
+        Assertions.assertEquals(f.numLeaves() - 1, f.negate().numLeaves())
+        Assertions.assertEquals(f.numLeaves() - 1, (scalar(2.0) * f).numLeaves())
     }
 
     @Test
@@ -118,22 +125,22 @@ internal class AADDTest {
     fun sqrt() {
         val a = leaf(affineForm1!!)
         val sqrt1 = a.sqrt()
-        Assertions.assertEquals(1.23, sqrt1.value!!.x0, PRECISION_EXP_MINUS_2)
-        Assertions.assertEquals(0.05, sqrt1.value!!.r, PRECISION_EXP_MINUS_2)
+        Assertions.assertEquals(1.22, sqrt1.value!!.x0, PRECISION_EXP_MINUS_2)
+        Assertions.assertEquals(0.01, sqrt1.value!!.r, PRECISION_EXP_MINUS_2)
         Assertions.assertEquals(1.0, sqrt1.value!!.min, PRECISION_EXP_MINUS_2)
-        Assertions.assertEquals(1.45, sqrt1.value!!.max, PRECISION_EXP_MINUS_2)
+        Assertions.assertEquals(1.41, sqrt1.value!!.max, PRECISION_EXP_MINUS_2)
         val b = leaf(largerValue!!)
         val sqrt2 = b.sqrt()
-        Assertions.assertEquals(3.17, sqrt2.value!!.x0, PRECISION_EXP_MINUS_2)
-        Assertions.assertEquals(0.11, sqrt2.value!!.r, PRECISION_EXP_MINUS_2)
+        Assertions.assertEquals(3.14, sqrt2.value!!.x0, PRECISION_EXP_MINUS_2)
+        Assertions.assertEquals(0.02, sqrt2.value!!.r, PRECISION_EXP_MINUS_2)
         Assertions.assertEquals(2.65, sqrt2.value!!.min, PRECISION_EXP_MINUS_2)
-        Assertions.assertEquals(3.69, sqrt2.value!!.max, PRECISION_EXP_MINUS_2)
+        Assertions.assertEquals(3.61, sqrt2.value!!.max, PRECISION_EXP_MINUS_2)
         val c = leaf(restrictedRange!!)
         val sqrt3 = c.sqrt()
-        Assertions.assertEquals(1.23, sqrt3.value!!.x0, PRECISION_EXP_MINUS_2)
-        Assertions.assertEquals(0.04, sqrt3.value!!.r, PRECISION_EXP_MINUS_2)
+        Assertions.assertEquals(1.22, sqrt3.value!!.x0, PRECISION_EXP_MINUS_2)
+        Assertions.assertEquals(0.01, sqrt3.value!!.r, PRECISION_EXP_MINUS_2)
         Assertions.assertEquals(1.05, sqrt3.value!!.min, PRECISION_EXP_MINUS_2)
-        Assertions.assertEquals(1.40, sqrt3.value!!.max, PRECISION_EXP_MINUS_2)
+        Assertions.assertEquals(1.38, sqrt3.value!!.max, PRECISION_EXP_MINUS_2)
     }
 
     @Test
@@ -346,6 +353,172 @@ internal class AADDTest {
         println("f=$f")
     }
 
+    /** Unary operations on many leaves run on the fork/join pool, with the same result. */
+    @Test
+    fun parallelApply() {
+        fun tree(depth: Int, offset: Int): AADD =
+                if (depth == 0) AADD.range(offset + 1.0, offset + 1.5, -1)
+                else AADD.internal(1000 + depth, tree(depth - 1, 2 * offset), tree(depth - 1, 2 * offset + 1))
+        fun leaves(a: AADD, out: MutableList<AffineForm>) {
+            if (a.isLeaf) out.add(a.value!!) else { leaves(a.T()!!, out); leaves(a.F()!!, out) }
+        }
+        val a = tree(10, 0)
+        val seq = ArrayList<AffineForm>()
+        val par = ArrayList<AffineForm>()
+        leaves(a.sqrt(), seq)
+        val th = AADD.applyParallelTh
+        val cutoff = AADD.applyCutoff
+        try {
+            AADD.applyParallelTh = 2
+            AADD.applyCutoff = 16
+            leaves(a.sqrt(), par)
+        } finally {
+            AADD.applyParallelTh = th
+            AADD.applyCutoff = cutoff
+        }
+        Assertions.assertEquals(1024, seq.size)
+        Assertions.assertEquals(seq, par)
+    }
+
+    /** The bounds computed by LP are kept per path; the affine forms of shared leaves remain unchanged. */
+    @Test
+    fun leafBoundsPerPath() {
+        val i = NoiseVariables.noiseVar("lb")
+        val a = range(0.0, 1.0, i)
+        val d = (a gt scalar(0.5)).ite(a, scalar(5.0))
+        val expected = d.getRange()
+        Assertions.assertEquals(0.0, a.value!!.min, 1e-12)
+        Assertions.assertTrue(expected.min > 0.4)
+        val ranges = (1..8).toList().parallelStream().map { d.getRange() }.toArray()
+        for (r in ranges) Assertions.assertEquals(expected, r)
+        Assertions.assertEquals(0.0, a.getRange().min, 1e-12)
+        Assertions.assertFalse(0.2 in d)
+    }
+
+    /** The tiers of RangeOptions refine the leaves by LP with increasing effort, and report it. */
+    @Test
+    fun rangeOptions() {
+        fun diagram(): AADD {
+            val i = NoiseVariables.noiseVar("ro")
+            val a = range(0.0, 1.0, i)
+            return (a gt scalar(0.5)).ite(a, a * 2.0)
+        }
+        val interval = diagram().getRange(RangeOptions.interval())
+        Assertions.assertEquals(0, interval.refined.size)
+        Assertions.assertEquals(2, interval.skipped)
+        Assertions.assertEquals(0.0, interval.range.min, 1e-9)
+        Assertions.assertEquals(2.0, interval.range.max, 1e-9)
+
+        val d = diagram()
+        val full = d.getRange(RangeOptions.full())
+        Assertions.assertEquals(2, full.refined.size)
+        Assertions.assertEquals(0, full.skipped)
+        Assertions.assertTrue(full.range.max < 1.0 + 1e-6)
+        // Bounds are kept; a second call refines no further leaf.
+        val again = d.getRange(RangeOptions.threshold())
+        Assertions.assertEquals(0, again.refined.size)
+        Assertions.assertEquals(full.range, again.range)
+
+        val large = diagram().getRange(RangeOptions.threshold(10.0))
+        Assertions.assertEquals(0, large.refined.size)
+        Assertions.assertEquals(2, large.skipped)
+        val boxed = diagram().getRange(RangeOptions.timeBoxed(60_000))
+        Assertions.assertEquals(2, boxed.refined.size)
+        Assertions.assertThrows(IllegalArgumentException::class.java) {
+            RangeOptions(RangeOptions.Tier.TIME_BOXED)
+        }
+    }
+
+    /** The anytime range is valid at once and is refined to the range of getRange. */
+    @Test
+    fun anytimeRange() {
+        fun diagram(): AADD {
+            val i = NoiseVariables.noiseVar("at")
+            val a = range(0.0, 1.0, i)
+            return (a gt scalar(0.5)).ite(a, a * 2.0)
+        }
+        val d = diagram()
+        val updates = Collections.synchronizedList(ArrayList<Range>())
+        val anytime = d.getRangeAnytime(RangeOptions.full()) { updates.add(it) }
+        val first = anytime.current
+        Assertions.assertTrue(first.min <= 0.0 + 1e-9 && first.max >= 1.0 - 1e-9)
+        val result = anytime.await()
+        Assertions.assertTrue(anytime.isDone)
+        Assertions.assertEquals(diagram().getRange(RangeOptions.full()).range, result)
+        Assertions.assertEquals(result, d.getRange())
+        if (updates.isNotEmpty()) Assertions.assertEquals(result, updates.last())
+        for (r in updates) Assertions.assertTrue(r.min >= first.min && r.max <= first.max)
+
+        val boxed = diagram().getRangeAnytime(RangeOptions.timeBoxed(1)).await()
+        Assertions.assertTrue(boxed.min <= result.min + 1e-9 && boxed.max >= result.max - 1e-9)
+
+        // A failure of LP is thrown by await(), and not taken as the final range.
+        val failing = AnytimeRange(arrayOf(Range(0.0, 1.0), Range(1.0, 2.0)), booleanArrayOf(true, true),
+                                   { _ -> throw RuntimeException("unbounded solution") }, Long.MAX_VALUE, null)
+        val e = Assertions.assertThrows(RuntimeException::class.java) { failing.await() }
+        Assertions.assertEquals("unbounded solution", e.message)
+        Assertions.assertTrue(failing.isDone)
+    }
+
+    /** Branch-and-bound skips the LP of leaves within the incumbents, with the same range. */
+    @Test
+    fun branchAndBound() {
+        val i = NoiseVariables.noiseVar("bb")
+        val a = range(0.0, 1.0, i)
+        val d = (a gt scalar(0.5)).ite(scalar(5.0), (a gt scalar(0.2)).ite(a, scalar(-5.0)))
+        val bb = d.getRange(RangeOptions.full().withBranchAndBound())
+        Assertions.assertEquals(0, bb.refined.size)
+        Assertions.assertEquals(1, bb.skipped)
+        Assertions.assertEquals(-5.0, bb.range.min, 1e-12)
+        Assertions.assertEquals(5.0, bb.range.max, 1e-12)
+
+        fun diagram(): AADD {
+            val j = NoiseVariables.noiseVar("bb2")
+            val b = range(0.0, 1.0, j)
+            var e = b
+            for (k in 1..6) e = (b gt scalar(k / 7.0)).ite(b * (k.toDouble()), e)
+            return e
+        }
+        val full = diagram().getRange(RangeOptions.full())
+        val pruned = diagram().getRange(RangeOptions.full().withBranchAndBound())
+        Assertions.assertEquals(full.range.min, pruned.range.min, 1e-9)
+        Assertions.assertEquals(full.range.max, pruned.range.max, 1e-9)
+        Assertions.assertTrue(pruned.refined.size <= full.refined.size)
+    }
+
+    /** Comparisons decide leaves by their bounds; only the undecided ones are solved by LP. */
+    @Test
+    fun twoPhaseComparison() {
+        val a = range(0.0, 4.0, -1)
+        val b = (a gt 2.0).ite(a, a * -1.0)
+        val c = b gt scalar(1.0)
+        Assertions.assertFalse(c.isLeaf)
+        Assertions.assertNotEquals(BDD.Infeasible, c.T) // needs LP
+        Assertions.assertEquals(BDD.False, c.F)         // -a in [-4, 0] by its bounds
+        Assertions.assertEquals(BDD.False, b lt -5.0)
+        Assertions.assertEquals(BDD.True, b ge -4.0)
+    }
+
+    /** The scalar kernels compute the same ranges as the operations with scalar(c). */
+    @Test
+    fun scalarKernels() {
+        val a = range(1.0, 3.0, -1)
+        val b = (a gt scalar(2.0)).ite(a * scalar(2.0), a + scalar(1.0))
+        val sum = b.plusScalar(0.5).getRange()
+        Assertions.assertEquals((b + scalar(0.5)).getRange().min, sum.min, 1e-12)
+        Assertions.assertEquals((b + scalar(0.5)).getRange().max, sum.max, 1e-12)
+        val prod = b.timesScalar(-3.0).getRange()
+        Assertions.assertEquals((b * scalar(-3.0)).getRange().min, prod.min, 1e-12)
+        Assertions.assertEquals((b * scalar(-3.0)).getRange().max, prod.max, 1e-12)
+        Assertions.assertTrue(prod.min <= -18.0 && prod.max >= -9.0)
+        Assertions.assertEquals(BDD.True, scalar(2.0) gt 1.0)
+        Assertions.assertEquals(BDD.False, scalar(2.0) le 1.0)
+        Assertions.assertEquals(BDD.True, a ge 1.0)
+        Assertions.assertFalse((a lt 2.0).isLeaf)
+        val c = a.intersect(1.5, 2.5)
+        Assertions.assertTrue(c.getRange().min >= 1.5 - 1e-9 && c.getRange().max <= 2.5 + 1e-9)
+    }
+
     companion object {
         private const val PRECISION_EXP_MINUS_6 = 0.000001
         private const val PRECISION_EXP_MINUS_2 = 0.01
@@ -0,0 +1,65 @@
+package jAADD
+
+import jAADD.AADD.Companion.range
+import jAADD.AADD.Companion.scalar
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class AffineFormBatchTest {
+
+    private fun assertEncloses(outer: AffineForm, inner: AffineForm) {
+        assertEquals(inner.x0, outer.x0, 1e-12)
+        for ((symbol, c) in inner.xi) assertEquals(c, outer.xi[symbol] ?: 0.0, 1e-12)
+        assertTrue(outer.r >= inner.r - 1e-12)
+        assertTrue(outer.min <= inner.min && outer.max >= inner.max)
+        assertTrue(outer.max - outer.min <= inner.max - inner.min + 1e-9)
+    }
+
+    /** The batch operations enclose the operations of AffineForm, form by form. */
+    @Test
+    fun batchOperations() {
+        val a = AffineForm(1.0, 2.0, 1)
+        val b = AffineForm(-1.0, 3.0, 2)
+        val c = AffineForm(0.5, 0.75, 3)
+        val xs = listOf(a, b, a + c, AffineForm(2.5), b * c)
+        val ys = listOf(b, c, a * b, a, AffineForm(-3.0))
+        val x = AffineFormBatch.of(xs)
+        val y = AffineFormBatch.of(ys)
+        assertEquals(5, x.size)
+        assertEquals(listOf(1, 2, 3), x.symbols.toList().filter { it <= 3 })
+        val sum = x + y
+        val prod = x * y
+        val aff = x.affine(-2.0, 1.0, 0.25)
+        for (i in xs.indices) {
+            assertEncloses(sum[i], xs[i] + ys[i])
+            assertEncloses(prod[i], xs[i] * ys[i])
+            assertEncloses(aff[i], xs[i].affine(-2.0, 1.0, 0.25))
+        }
+    }
+
+    /** Empty and unbounded forms are computed by AffineForm. */
+    @Test
+    fun specialForms() {
+        val x = AffineFormBatch.of(listOf(AffineForm.Empty, AffineForm.Reals, AffineForm(1.0, 2.0, 1)))
+        val sum = x + x
+        assertTrue(sum[0].isEmpty())
+        assertEquals(AffineForm.Reals + AffineForm.Reals, sum[1])
+        assertEquals(3.0, sum[2].x0, 1e-12)
+    }
+
+    /** applyBatch computes the same as apply on all leaves of an AADD. */
+    @Test
+    fun applyOnLeaves() {
+        val a = range(0.0, 4.0, -1)
+        val b = (a gt scalar(2.0)).ite(a * 2.0, a + scalar(1.0))
+        val batch = b.applyBatch { it.affine(3.0, -1.0, 0.0) }
+        val single = b * 3.0 - scalar(1.0)
+        val rb = batch.getRange()
+        val rs = single.getRange()
+        assertEquals(rs.min, rb.min, 1e-9)
+        assertEquals(rs.max, rb.max, 1e-9)
+        val sqr = b.applyBatch { it * it }
+        assertEquals((b * b).getRange().max, sqr.getRange().max, 1e-9)
+    }
+}
@@ -184,20 +184,60 @@ class AffineFormTest {
     @Test
     fun testSqrt() {
         val sqrt1 = af1.sqrt()
-        assertEquals(1.23, sqrt1.central, 0.01)
-        assertEquals(0.05, sqrt1.r, 0.01)
+        assertEquals(1.22, sqrt1.central, 0.01)
+        assertEquals(0.01, sqrt1.r, 0.01)
         assertEquals(1.0, sqrt1.min, 0.01)
-        assertEquals(1.45, sqrt1.max, 0.01)
+        assertEquals(1.41, sqrt1.max, 0.01)
         val sqrt2 = lgr!!.sqrt()
-        assertEquals(3.17, sqrt2.central, 0.01)
-        assertEquals(0.11, sqrt2.r, 0.01)
+        assertEquals(3.14, sqrt2.central, 0.01)
+        assertEquals(0.02, sqrt2.r, 0.01)
         assertEquals(2.65, sqrt2.min, 0.01)
-        assertEquals(3.69, sqrt2.max, 0.01)
+        assertEquals(3.61, sqrt2.max, 0.01)
         val sqrt3 = rst!!.sqrt()
-        assertEquals(1.23, sqrt3.central, 0.01)
-        assertEquals(0.04, sqrt3.r, 0.01)
+        assertEquals(1.22, sqrt3.central, 0.01)
+        assertEquals(0.01, sqrt3.r, 0.01)
         assertEquals(1.05, sqrt3.min, 0.01)
-        assertEquals(1.40, sqrt3.max, 0.01)
+        assertEquals(1.38, sqrt3.max, 0.01)
+    }
+
+    /**
+     * The approximations of elementary functions enclose f(x) for all values of the noise symbol,
+     * both in their range and in their affine form.
+     */
+    @Test
+    fun testElementaryFunctions() {
+        val functions: List<Triple<String, (AffineForm) -> AffineForm, (Double) -> Double>> = listOf(
+                Triple("sqrt", { x: AffineForm -> x.sqrt() }, { x: Double -> Math.sqrt(x) }),
+                Triple("pow3", { x: AffineForm -> x.pow(3.0) }, { x: Double -> Math.pow(x, 3.0) }),
+                Triple("pow-.5", { x: AffineForm -> x.pow(-0.5) }, { x: Double -> Math.pow(x, -0.5) }),
+                Triple("sin", { x: AffineForm -> x.sin() }, { x: Double -> Math.sin(x) }),
+                Triple("cos", { x: AffineForm -> x.cos() }, { x: Double -> Math.cos(x) }),
+                Triple("tan", { x: AffineForm -> x.tan() }, { x: Double -> Math.tan(x) }),
+                Triple("atan", { x: AffineForm -> x.atan() }, { x: Double -> Math.atan(x) }))
+        val domains = listOf(0.2 .. 1.2, 0.01 .. 0.02, 1.0 .. 1.5, 2.0 .. 6.0, -1.0 .. 2.5)
+        try {
+            for (approximation in Approximation.values()) {
+                AffineForm.approximation = approximation
+                for ((name, op, f) in functions) for (d in domains) {
+                    if ((name == "sqrt" || name == "pow-.5") && d.start < 0.0) continue
+                    if (name == "tan" && d.endInclusive > 1.5) continue
+                    val x = AffineForm(d.start, d.endInclusive, 99)
+                    val y = op(x)
+                    val cy = y.xi[99] ?: 0.0
+                    for (i in 0 .. 100) {
+                        val eps = -1.0 + i / 50.0
+                        val v = f(Math.min(Math.max(x.x0 + x.xi[99]!! * eps, x.min), x.max))
+                        assertTrue(v >= y.min && v <= y.max, "$name on $d at $eps")
+                        assertTrue(Math.abs(v - (y.x0 + cy * eps)) <= y.r + (y.radius - Math.abs(cy)) + 1e-12,
+                                "$name on $d at $eps")
+                    }
+                }
+            }
+        } finally {
+            AffineForm.approximation = Approximation.CHEBYSHEV
+        }
+        assertEquals(Math.sin(0.3), AffineForm(0.3).sin().x0)
+        assertTrue(AffineForm(1.0, 2.0, -1).tan().isRealsNaN())
     }
 
     /** Inverse of range, including 1/0 and 1/(inf ... inf) */
@@ -260,6 +300,56 @@ class AffineFormTest {
         assertEquals(0.0, scl!!.radius, PRECISION)
     }
 
+    /** The radius is computed at construction; the given partial deviations are copied. */
+    @Test
+    fun testCachedRadius() {
+        val terms = hashMapOf(1 to 2.0, 2 to -1.0)
+        val af3 = AffineForm(Range(7.0, 13.0), 10.0, 0.0, terms)
+        terms[3] = 5.0
+        assertEquals(3.0, af3.radius, PRECISION)
+        assertEquals(2, af3.xi.size)
+        val sum = af3 + af3 * 2.0
+        assertEquals(9.0, sum.radius, PRECISION)
+        assertEquals(9.0, (-sum).radius, PRECISION)
+        assertEquals(af3.radius, (af3 + 1.0).radius, PRECISION)
+        assertTrue(AffineForm.Empty.radius.isNaN())
+
+        // Gson does not call a constructor; the radius must be computed nevertheless.
+        val gson = GsonBuilder().create()
+        val read = gson.fromJson(gson.toJson(AffineForm(1.0, 3.0, 7)), AffineForm::class.java)
+        assertEquals(1.0, read.radius, PRECISION)
+        val sqr = read * read
+        assertTrue(sqr.min <= 1.0 && sqr.max >= 9.0)
+    }
+
+    /** With condensation, the number of terms is bounded; the condensed forms enclose the original ones. */
+    @Test
+    fun testCondensation() {
+        val forms = (1 .. 8).map { AffineForm(it.toDouble(), it * 1.5, -1) }
+        fun sum(): AffineForm {
+            var s = forms[0]
+            for (f in forms.drop(1)) s = s * forms[0] + f
+            return s
+        }
+        val exact = sum()
+        try {
+            for (strategy in listOf(Condensation.IntoRadius, Condensation.IntoNewSymbol)) {
+                AffineForm.maxTerms = 4
+                AffineForm.condensation = strategy
+                val condensed = sum()
+                assertTrue(condensed.xi.size <= 4)
+                assertTrue(condensed.min <= exact.min && condensed.max >= exact.max)
+                assertEquals(exact.x0, condensed.x0, PRECISION)
+            }
+        } finally {
+            AffineForm.maxTerms = Int.MAX_VALUE
+            AffineForm.condensation = Condensation.IntoNewSymbol
+        }
+        val terms = hashMapOf(1 to 0.5, 2 to -0.1, 3 to 0.1, 4 to 2.0)
+        assertEquals(0.2, Condensation.removeSmallest(terms, 2), PRECISION)
+        assertEquals(setOf(1, 4), terms.keys)
+    }
+
     @Test
     fun testEquality() {
         val af3 = AffineForm(1.0, 2.0, 2)
@@ -0,0 +1,78 @@
+package jAADD
+
+import exprParser.ConstrNetSolver
+import exprParser.ExprParser
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class ConstrNetSolverTest {
+
+    /** Values are propagated through a chain of equations, forwards and backwards. */
+    @Test
+    fun chainOfEquations() {
+        val p = ExprParser()
+        p.defVar("b", AADD.scalar(1.0))
+        p.defVar("c", AADD.scalar(2.0))
+        p.defVar("e", AADD.scalar(10.0))
+        p.evalExpr("eqn a == b+c")
+        p.evalExpr("eqn d == a*2")
+        p.evalExpr("eqn e == d+f")
+        val solver = ConstrNetSolver(p)
+        assertTrue(solver.solve())
+        assertEquals(3.0, p.getVar("a").aadd.value!!.x0, 1e-9)
+        assertEquals(6.0, p.getVar("d").aadd.value!!.x0, 1e-9)
+        // f is computed top-down from e and d.
+        assertEquals(4.0, p.getVar("f").aadd.value!!.x0, 1e-9)
+        assertEquals(0, solver.conflicts)
+    }
+
+    /** Equations sharing a variable narrow it; the solver stops once nothing changes. */
+    @Test
+    fun sharedVariable() {
+        val p = ExprParser()
+        p.defVar("x", AADD.range(0.0, 10.0, -1))
+        p.defVar("y", AADD.range(2.0, 3.0, -1))
+        p.evalExpr("eqn x == y+1")
+        val solver = ConstrNetSolver(p)
+        assertTrue(solver.solve())
+        val r = p.getVar("x").aadd.getRange()
+        assertEquals(3.0, r.min, 1e-9)
+        assertEquals(4.0, r.max, 1e-9)
+        assertTrue(solver.steps <= 2)
+
+        // A second solve does not change anything.
+        solver.solve()
+        assertEquals(1, solver.steps)
+    }
+
+    /** Independent clusters are propagated concurrently with the same result as sequentially. */
+    @Test
+    fun parallelClusters() {
+        fun model(): ExprParser {
+            val p = ExprParser()
+            for (k in 0 until 20) {
+                p.defVar("b$k", AADD.range(1.0, 2.0, -1))
+                p.defVar("c$k", AADD.scalar(k.toDouble()))
+                p.evalExpr("eqn a$k == b$k+c$k")
+                p.evalExpr("eqn d$k == a$k*2")
+            }
+            p.evalExpr("eqn d0 == d1+x")
+            return p
+        }
+        val seq = model()
+        val par = model()
+        val solver = ConstrNetSolver(par)
+        assertEquals(19, solver.clusters().size)
+        assertEquals(listOf(0, 1, 2, 3, 40), solver.clusters()[0])
+        assertTrue(ConstrNetSolver(seq).solve())
+        assertTrue(solver.solveParallel())
+        for (k in 0 until 20) {
+            val s = seq.getVar("d$k").aadd.getRange()
+            val r = par.getVar("d$k").aadd.getRange()
+            assertEquals(s.min, r.min, 1e-9)
+            assertEquals(s.max, r.max, 1e-9)
+        }
+        assertEquals(seq.getVar("x").aadd.getRange().min, par.getVar("x").aadd.getRange().min, 1e-9)
+    }
+}
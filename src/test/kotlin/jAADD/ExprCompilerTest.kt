@@ -0,0 +1,69 @@
+package jAADD
+
+import exprParser.ExprParser
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class ExprCompilerTest {
+
+    /** A compiled expression computes the same as the interpreter. */
+    @Test
+    fun compiledArithmetic() {
+        val p = ExprParser()
+        p.defVar("a", AADD.scalar(1.0))
+        p.defVar("b", AADD.scalar(2.0))
+        p.defVar("c", AADD.scalar(3.0))
+        p.expr = "b*c+a/(c-b)"
+        val c = p.compile()
+        assertEquals(p.evalAADD().value!!.x0, c.evalAADD().value!!.x0)
+        assertEquals(7.0, c.evalAADD().value!!.x0)
+    }
+
+    /** Variables are set by slot without symbol table lookup, or reloaded from the symbol table. */
+    @Test
+    fun slotsAndReload() {
+        val p = ExprParser()
+        p.defVar("a", AADD.scalar(1.0))
+        p.defVar("b", AADD.scalar(2.0))
+        p.expr = "a+b*a"
+        val c = p.compile()
+        assertEquals(setOf("a", "b"), c.variables)
+        val a = c.slot("a")
+        for (i in 1..10) {
+            c[a] = AADD.scalar(i.toDouble())
+            assertEquals(3.0 * i, c.evalAADD().value!!.x0)
+        }
+        p.defVar("b", AADD.scalar(10.0))
+        c.load()
+        assertEquals(11.0, c.evalAADD().value!!.x0)
+    }
+
+    /** Calls of user-defined and predefined functions are compiled. */
+    @Test
+    fun compiledFunctions() {
+        val p = ExprParser()
+        p.expr = "fun g(x) := x+1"
+        p.defVar("a", AADD.scalar(3.0))
+        p.expr = "g(a*2)*2"
+        assertEquals(14.0, p.compile().evalAADD().value!!.x0)
+        p.expr = "ite(a > 2, exp(0), sqrt(4))"
+        assertEquals(1.0, p.compile().evalAADD().value!!.x0, 1e-9)
+        p.expr = "not(a > 2)"
+        assertTrue(p.compile().evalBDD() === BDD.False)
+    }
+
+    /** Nested calls bind the parameters by position; arguments are read when the call is evaluated. */
+    @Test
+    fun nestedFunctionCalls() {
+        val p = ExprParser()
+        p.expr = "fun f(x, y) := x*y"
+        p.expr = "fun g(y) := f(y+1, y)+y"
+        p.defVar("a", AADD.scalar(2.0))
+        p.expr = "g(a)"
+        assertEquals(8.0, p.evalAADD().value!!.x0)
+        assertEquals(8.0, p.compile().evalAADD().value!!.x0)
+        p.defVar("a", AADD.scalar(3.0))
+        assertEquals(15.0, p.evalAADD().value!!.x0)
+    }
+}
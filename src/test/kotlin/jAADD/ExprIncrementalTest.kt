@@ -0,0 +1,48 @@
+package jAADD
+
+import exprParser.ExprParser
+import exprParser.ExprTrace
+import exprParser.ExprTree
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+
+class ExprIncrementalTest {
+
+    /** After a variable changed, only the nodes on the path from its leaves to the root are re-computed. */
+    @Test
+    fun onlyDirtyPathRecomputed() {
+        val p = ExprParser()
+        p.defVar("a", AADD.scalar(1.0))
+        p.defVar("b", AADD.scalar(2.0))
+        p.expr = "a*2+b*3"
+        assertEquals(8.0, p.evalAADD().value!!.x0, 1e-12)
+
+        val trace = ExprTrace()
+        ExprTree.tracer = trace
+        try {
+            p.evalAADD()
+            assertEquals(0L, trace.count)
+            p.defVar("b", AADD.scalar(4.0))
+            assertEquals(14.0, p.evalAADD().value!!.x0, 1e-12)
+        } finally {
+            ExprTree.tracer = null
+        }
+        // Nodes: b, (b*3), (a*2+b*3)
+        assertEquals(3L, trace.count)
+    }
+
+    /** Calls of user-defined functions are re-computed if a global read in their body changed. */
+    @Test
+    fun functionReadsGlobal() {
+        val p = ExprParser()
+        p.defVar("a", AADD.scalar(1.0))
+        p.defVar("c", AADD.scalar(10.0))
+        p.evalExpr("fun f(x) := x + c")
+        p.expr = "f(a*1)*2"
+        assertEquals(22.0, p.evalAADD().value!!.x0, 1e-12)
+        p.defVar("c", AADD.scalar(20.0))
+        assertEquals(42.0, p.evalAADD().value!!.x0, 1e-12)
+        p.defVar("a", AADD.scalar(2.0))
+        assertEquals(44.0, p.evalAADD().value!!.x0, 1e-12)
+    }
+}
@@ -0,0 +1,79 @@
+package jAADD
+
+import exprParser.ExprParser
+import exprParser.ExprTrace
+import exprParser.ExprTree
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class ExprOptimizerTest {
+
+    private fun eventsOf(p: ExprParser): Long {
+        val trace = ExprTrace()
+        ExprTree.tracer = trace
+        try {
+            p.evalAADD()
+        } finally {
+            ExprTree.tracer = null
+        }
+        return trace.count
+    }
+
+    /** Identical subexpressions are computed once; the result is the same as without sharing. */
+    @Test
+    fun sharedSubexpressions() {
+        val expr = "(a*b)+(a*b)*(a*b)-sqrt(a*b)"
+        val plain = ExprParser()
+        plain.defVar("a", AADD.range(1.0, 2.0, -1))
+        plain.defVar("b", AADD.scalar(3.0))
+        plain.expr = expr
+        val p = ExprParser()
+        p.cse = true
+        p.defVar("a", plain.getVar("a").aadd)
+        p.defVar("b", AADD.scalar(3.0))
+        p.expr = expr
+        // a*b is computed once, for its four occurrences.
+        assertEquals(1, p.sharedNodes)
+        assertTrue(eventsOf(p) < eventsOf(plain))
+        assertEquals(plain.evalAADD().value!!.x0, p.evalAADD().value!!.x0, 1e-12)
+        assertEquals(plain.evalAADD().value!!.x0, p.compile().evalAADD().value!!.x0, 1e-12)
+
+        // All parents of a shared node are re-computed after a change.
+        plain.defVar("b", AADD.scalar(4.0))
+        p.defVar("b", AADD.scalar(4.0))
+        assertEquals(plain.evalAADD().value!!.x0, p.evalAADD().value!!.x0, 1e-12)
+    }
+
+    /** Calls of range create a new noise symbol each; they are not shared. */
+    @Test
+    fun rangeNotShared() {
+        val p = ExprParser()
+        p.cse = true
+        p.expr = "range(1,2)-range(1,2)"
+        assertEquals(0, p.sharedNodes)
+        assertEquals(-1.0, p.evalAADD().getRange().min, 1e-9)
+    }
+
+    /** Operations on literals are computed and identity operations removed while parsing. */
+    @Test
+    fun constantFolding() {
+        val p = ExprParser()
+        p.defVar("x", AADD.range(1.0, 2.0, -1))
+        p.expr = "(2*3-1)*x*1+0-(-(x/1))"
+        // Nodes: 5, x, (5*x), x, (5*x + x)
+        assertEquals(5L, eventsOf(p))
+        assertEquals(9.0, p.evalAADD().value!!.x0, 1e-12)
+        p.expr = "-sqrt(4)"
+        // Only the literal -2
+        assertEquals(1L, eventsOf(p))
+        assertEquals(-2.0, p.evalAADD().value!!.x0, 1e-9)
+
+        val q = ExprParser()
+        q.constFold = false
+        q.defVar("x", p.getVar("x").aadd)
+        q.expr = "(2*3-1)*x*1+0-(-(x/1))"
+        assertTrue(eventsOf(q) > 5L)
+        assertEquals(p.evalAADD("(2*3-1)*x*1+0-(-(x/1))").value!!.x0, q.evalAADD().value!!.x0, 1e-12)
+    }
+}
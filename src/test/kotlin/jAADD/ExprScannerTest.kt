@@ -0,0 +1,108 @@
+package jAADD
+
+import exprParser.ExprScanner
+import exprParser.ExprScanner.Companion.ASS
+import exprParser.ExprScanner.Companion.DOUBLE
+import exprParser.ExprScanner.Companion.EE
+import exprParser.ExprScanner.Companion.EOF
+import exprParser.ExprScanner.Companion.EOL
+import exprParser.ExprScanner.Companion.EQN
+import exprParser.ExprScanner.Companion.FUN
+import exprParser.ExprScanner.Companion.GE
+import exprParser.ExprScanner.Companion.ID
+import exprParser.ExprScanner.Companion.LE
+import exprParser.ExprScanner.Companion.VAL
+import exprParser.ExprScanner.Companion.VAR
+import exprParser.ParseError
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import java.io.StreamTokenizer
+import java.io.StringReader
+import java.util.*
+
+class ExprScannerTest {
+
+    /** Returns the tokens of a string as text, or the error. */
+    private class Tokens(s: String, script: Boolean = false) : ExprScanner() {
+        val list = ArrayList<String>()
+        init {
+            try {
+                if (script) setupScript(s) else setup(s)
+                while (list.size < 1000) {
+                    list.add(describe(token, nval, sval))
+                    if (token == EOF || (!script && token == EOL)) break
+                    nextToken()
+                }
+            } catch (e: ParseError) {
+                list.add("error")
+            }
+        }
+    }
+
+    /** The scanner as it was implemented with StreamTokenizer, as reference. */
+    private fun reference(s: String): List<String> {
+        val st = StreamTokenizer(StringReader(s))
+        st.resetSyntax()
+        st.lowerCaseMode(true)
+        st.parseNumbers()
+        st.wordChars('a'.toInt(), 'z'.toInt())
+        st.wordChars('A'.toInt(), 'Z'.toInt())
+        st.wordChars('0'.toInt(), '9'.toInt())
+        st.wordChars('.'.toInt(), '.'.toInt())
+        st.whitespaceChars(' '.toInt(), ' '.toInt())
+        st.whitespaceChars('\t'.toInt(), '\t'.toInt())
+        st.ordinaryChar('-'.toInt())
+        val list = ArrayList<String>()
+        while (list.size < 1000) {
+            var token = st.nextToken()
+            var nval = 0.0
+            var sval: String? = null
+            when (token) {
+                StreamTokenizer.TT_EOF, StreamTokenizer.TT_EOL -> token = EOL
+                StreamTokenizer.TT_NUMBER -> { nval = st.nval; token = DOUBLE }
+                StreamTokenizer.TT_WORD -> {
+                    sval = st.sval
+                    token = when (sval) { "var" -> VAR; "val" -> VAL; "fun" -> FUN; "eqn" -> EQN; else -> ID }
+                }
+                '('.toInt(), ')'.toInt(), '+'.toInt(), '-'.toInt(), '*'.toInt(), '/'.toInt(), '&'.toInt(), '|'.toInt(), ','.toInt() -> { }
+                ':'.toInt() -> if (st.nextToken() == '='.toInt()) token = ASS
+                '='.toInt() -> if (st.nextToken() == '='.toInt()) token = EE else st.pushBack()
+                '>'.toInt() -> if (st.nextToken() == '='.toInt()) token = GE else st.pushBack()
+                '<'.toInt() -> if (st.nextToken() == '='.toInt()) token = LE else st.pushBack()
+                else -> { list.add("error"); return list }
+            }
+            list.add(describe(token, nval, sval))
+            if (token == EOL) break
+        }
+        return list
+    }
+
+    /** The scanner returns the same tokens as the StreamTokenizer for random strings. */
+    @Test
+    fun sameTokensAsStreamTokenizer() {
+        val chars = "aZx9.0 1\t.+-*/()<>=:,&|Äq#\n"
+        val rnd = Random(7)
+        for (n in 0 until 5000) {
+            val s = String(CharArray(rnd.nextInt(20)) { chars[rnd.nextInt(chars.length)] })
+            assertEquals(reference(s), Tokens(s).list, "input: '$s'")
+        }
+        assertEquals(reference("var X1 := 12.5e3 *.25-3..4"), Tokens("var X1 := 12.5e3 *.25-3..4").list)
+    }
+
+    /** In script mode, lines are separated by EOL, comments are skipped, and the end is EOF. */
+    @Test
+    fun scriptTokens() {
+        val t = Tokens("var a := 1 // one\r\n\n// only a comment\nb/2", true)
+        assertEquals(listOf("$VAR", "$ID a", "$ASS", "$DOUBLE 1.0", "$EOL", "$EOL", "$EOL",
+                            "$ID b", "/", "$DOUBLE 2.0", "$EOF"), t.list)
+    }
+
+    companion object {
+        fun describe(token: Int, nval: Double, sval: String?) = when (token) {
+            DOUBLE -> "$token $nval"
+            ID -> "$token $sval"
+            in 0..0xffff -> token.toChar().toString()
+            else -> "$token"
+        }
+    }
+}
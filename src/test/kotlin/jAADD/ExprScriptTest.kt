@@ -0,0 +1,58 @@
+package jAADD
+
+import exprParser.ExprParser
+import exprParser.ParseError
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class ExprScriptTest {
+
+    /** A script is parsed at once; independent var statements are in the same level. */
+    @Test
+    fun levelsOfScript() {
+        val p = ExprParser()
+        val s = p.parseScript("""
+            // A small model.
+            var a := 1
+            var b := 2   // independent of a
+            fun sq(x) := x*x
+            var c := sq(a) + b
+            var a := c*10
+            var d := a+1
+            c-b
+            """.trimIndent())
+        assertEquals(7, s.statements.size)
+        assertEquals(listOf(listOf(0, 1), listOf(3), listOf(4, 6), listOf(5)), s.levels)
+        s.eval()
+        assertEquals(3.0, p.getVar("c").aadd.value!!.x0)
+        assertEquals(30.0, p.getVar("a").aadd.value!!.x0)
+        assertEquals(31.0, p.getVar("d").aadd.value!!.x0)
+        assertEquals(1.0, (s.statements[6].value as AADD).value!!.x0)
+    }
+
+    /** Many independent statements are evaluated in parallel with the same result. */
+    @Test
+    fun parallelEvaluation() {
+        val text = StringBuilder()
+        for (k in 0 until 200) text.append("var x$k := range($k, ${k + 1}) * 2\n")
+        for (k in 0 until 200) text.append("var y$k := x$k + 1\n")
+        val p = ExprParser()
+        val s = p.parseScript(text.toString())
+        assertEquals(2, s.levels.size)
+        s.eval()
+        for (k in 0 until 200) {
+            val r = p.getVar("y$k").aadd.getRange()
+            assertEquals(2.0 * k + 1.0, r.min, 1e-9)
+            assertEquals(2.0 * k + 3.0, r.max, 1e-9)
+        }
+    }
+
+    /** Syntax errors report the line. */
+    @Test
+    fun errorWithLine() {
+        val e = assertThrows(ParseError::class.java) { ExprParser().parseScript("var a := 1\nvar b := (a+\n") }
+        assertTrue(e.message!!.contains("line 2"))
+    }
+}
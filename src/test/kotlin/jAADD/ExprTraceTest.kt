@@ -0,0 +1,62 @@
+package jAADD
+
+import exprParser.ExprParser
+import exprParser.ExprTrace
+import exprParser.ExprTracer
+import exprParser.ExprTree
+import exprParser.ExprTreeConstrNet
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.io.StringWriter
+
+class ExprTraceTest {
+
+    /** With a tracer set, each computed node is recorded; the ring buffer keeps the last events. */
+    @Test
+    fun traceOfEvaluation() {
+        val p = ExprParser()
+        p.defVar("a", AADD.range(1.0, 2.0, -1))
+        p.expr = "a*2+a"
+        val trace = ExprTrace(3)
+        ExprTree.tracer = trace
+        try {
+            p.evalAADD()
+        } finally {
+            ExprTree.tracer = null
+        }
+        // Nodes: a, 2, (a*2), a, (a*2+a)
+        assertEquals(5L, trace.count)
+        val events = trace.events()
+        assertEquals(3, events.size)
+        assertEquals("ExprTreeBinOp", events[2].node)
+        assertEquals(ExprTracer.Direction.UP, events[2].direction)
+        assertEquals(1, events[2].leaves)
+        val csv = StringWriter()
+        trace.export(csv)
+        assertTrue(csv.toString().startsWith("node,id,direction"))
+
+        // Without tracer, nothing is recorded.
+        p.evalAADD()
+        assertEquals(5L, trace.count)
+    }
+
+    /** The solve of a constraint network is traced once, after its iterations. */
+    @Test
+    fun traceOfSolve() {
+        val p = ExprParser()
+        p.defVar("a", AADD.Reals)
+        p.defVar("b", AADD.scalar(1.0))
+        p.expr = "eqn a == b+1"
+        val trace = ExprTrace()
+        ExprTree.tracer = trace
+        try {
+            (p.AST as ExprTreeConstrNet).solve(2)
+        } finally {
+            ExprTree.tracer = null
+        }
+        val events = trace.events()
+        assertEquals(ExprTracer.Direction.SOLVE, events.last().direction)
+        assertEquals(1, events.count { it.direction == ExprTracer.Direction.SOLVE })
+    }
+}
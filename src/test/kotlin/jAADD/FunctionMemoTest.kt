@@ -0,0 +1,35 @@
+package jAADD
+
+import exprParser.ExprParser
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Test
+
+class FunctionMemoTest {
+
+    /** Calls with identical arguments and globals are looked up; changed globals are recomputed. */
+    @Test
+    fun memoizedCalls() {
+        val p = ExprParser()
+        p.expr = "fun f(x) := x*x+c"
+        p.defVar("c", AADD.scalar(1.0))
+        val memo = p.memoize("f", 2)!!
+        val inputs = arrayOf(AADD.scalar(2.0), AADD.scalar(3.0))
+        p.expr = "f(a)"
+        for (i in 0 until 10) {
+            p.defVar("a", inputs[i % 2])
+            val x = inputs[i % 2].value!!.x0
+            assertEquals(x * x + 1.0, p.evalAADD().value!!.x0)
+        }
+        assertEquals(2L, memo.misses)
+        assertEquals(8L, memo.hits)
+
+        p.defVar("c", AADD.scalar(5.0))
+        assertEquals(14.0, p.evalAADD().value!!.x0)
+        assertEquals(3L, memo.misses)
+        assertEquals(1L, memo.evictions)
+        assertEquals(2, memo.size)
+
+        assertNull(p.memoize("f", 0))
+    }
+}
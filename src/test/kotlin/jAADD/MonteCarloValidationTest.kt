@@ -0,0 +1,35 @@
+package jAADD
+
+import jAADD.AADD.Companion.range
+import jAADD.AADD.Companion.scalar
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class MonteCarloValidationTest {
+
+    /** Samples of an AADD with conditions shall be within the range computed by LP. */
+    @Test
+    fun boundsOfConditionalAADD() {
+        val a = range(0.0, 4.0, -1)
+        val c = range(1.0, 2.0, -1)
+        val b = (a gt scalar(1.0)).ite(a + c, a - c)
+        val report = MonteCarloValidation(b, 42).run(200000)
+        println("  $report")
+        assertEquals(200000L, report.samples)
+        assertEquals(0L, report.violations)
+        assertTrue(report.tightness > 0.9 && report.tightness <= 1.0 + 1e-9)
+    }
+
+    /** For a given seed, the results are the same, independent of the scheduling. */
+    @Test
+    fun reproducibleWithSeed() {
+        val a = range(1.0, 3.0, -1)
+        val r1 = MonteCarloValidation(a * a, 7).run(300000)
+        val r2 = MonteCarloValidation(a * a, 7).run(300000)
+        assertEquals(r1.mean, r2.mean, 1e-12)
+        assertEquals(r1.observedMin, r2.observedMin)
+        assertEquals(r1.observedMax, r2.observedMax)
+        assertEquals(0L, r1.violations)
+    }
+}
@@ -59,7 +59,78 @@ class PerformanceTestsKotlin {
             time = time + 1.0
         }
     }
-}
-
 
+    /**
+     * Benchmark: interval multiplication of IntervalKernel compared with the former
+     * implementation of Range.times that boxes the four products.
+     * The kernel's bounds must enclose the former ones, as they are rounded outwards.
+     */
+    @Test
+    fun rangeTimesBenchmark() {
+        println("==== Range.times: IntervalKernel vs. boxed Collections.min/max ====")
+        val n = 1000
+        val rnd = java.util.Random(42)
+        val lo = DoubleArray(n) { rnd.nextDouble() * 10 - 5 }
+        val hi = DoubleArray(n) { lo[it] + rnd.nextDouble() }
+        fun boxed(a: Range, b: Range): Range {
+            val iaMult = java.util.Arrays.asList(a.min * b.min, a.min * b.max, a.max * b.min, a.max * b.max)
+            return Range(java.util.Collections.min(iaMult), java.util.Collections.max(iaMult))
+        }
+        val ranges = Array(n) { Range(lo[it], hi[it]) }
+        for (i in 0 until n) {
+            val k = ranges[i] * ranges[n - 1 - i]
+            val b = boxed(ranges[i], ranges[n - 1 - i])
+            assertTrue(k.min <= b.min && k.max >= b.max)
+        }
+        var sink = 0.0
+        for (round in 0 .. 2) {
+            var t = System.nanoTime()
+            for (rep in 0 until 200) for (i in 0 until n) sink += boxed(ranges[i], ranges[n - 1 - i]).max
+            val tBoxed = System.nanoTime() - t
+            t = System.nanoTime()
+            for (rep in 0 until 200) for (i in 0 until n) sink += (ranges[i] * ranges[n - 1 - i]).max
+            val tKernel = System.nanoTime() - t
+            println("  Round $round: boxed ${tBoxed / 1000} us, kernel ${tKernel / 1000} us")
+        }
+        assertTrue(sink.isFinite())
+    }
 
+    /**
+     * Benchmark: cost and width of the Chebyshev approximations of sqrt, sin and cos compared with
+     * the former ones: sqrt by exp(0.5*log(x)), and sin and cos by a new range [-1, 1].
+     * The width is the one of the range, and the one of the affine form including r.
+     */
+    @Test
+    fun elementaryFunctionsBenchmark() {
+        println("==== sqrt, sin, cos: Chebyshev approximation vs. former approximation ====")
+        val n = 1000
+        val rnd = java.util.Random(42)
+        val forms = Array(n) { val lo = rnd.nextDouble() * 2; AffineForm(lo, lo + rnd.nextDouble(), -1) }
+        val former: List<Pair<String, (AffineForm) -> AffineForm>> = listOf(
+                "sqrt" to { x: AffineForm -> x.log().times(0.5).exp() },
+                "sin" to { _: AffineForm -> AffineForm(-1.0, 1.0, -1) },
+                "cos" to { _: AffineForm -> AffineForm(-1.0, 1.0, -1) })
+        val chebyshev: List<(AffineForm) -> AffineForm> =
+                listOf({ x -> x.sqrt() }, { x -> x.sin() }, { x -> x.cos() })
+        for (k in former.indices) {
+            val (name, old) = former[k]
+            val new = chebyshev[k]
+            var oldWidth = 0.0; var newWidth = 0.0; var oldDev = 0.0; var newDev = 0.0
+            for (x in forms) {
+                val a = old(x); val b = new(x)
+                oldWidth += a.max - a.min; newWidth += b.max - b.min
+                oldDev += a.radius + a.r; newDev += b.radius + b.r
+            }
+            var t = System.nanoTime()
+            for (rep in 0 until 20) for (x in forms) old(x)
+            val tOld = System.nanoTime() - t
+            t = System.nanoTime()
+            for (rep in 0 until 20) for (x in forms) new(x)
+            val tNew = System.nanoTime() - t
+            println("  $name: width ${"%.4f".format(oldWidth / n)} -> ${"%.4f".format(newWidth / n)}, " +
+                    "deviation ${"%.4f".format(oldDev / n)} -> ${"%.4f".format(newDev / n)}, " +
+                    "time ${tOld / 1000} us -> ${tNew / 1000} us")
+            assertTrue(newWidth <= oldWidth)
+        }
+    }
+}
@@ -2,6 +2,7 @@ package jAADD
 import org.junit.jupiter.api.*
 import org.junit.jupiter.api.Assertions.assertTrue
 import org.junit.jupiter.api.Assertions.assertEquals
+import java.math.BigDecimal
 
 class RangeTest {
     val a = Range(-1.0, 2.0)
@@ -29,6 +30,22 @@ class RangeTest {
         println("c="+c)
     }
 
+    /** Inexact bounds are rounded outwards; exact ones are kept. */
+    @Test
+    fun testDirectedRounding() {
+        val sum = Range(0.1) + Range(0.2)
+        assertTrue(BigDecimal(sum.min) <= BigDecimal(0.1) + BigDecimal(0.2))
+        assertTrue(BigDecimal(sum.max) >= BigDecimal(0.1) + BigDecimal(0.2))
+        assertEquals(Math.nextUp(sum.min), sum.max)
+        val prod = Range(0.1, 0.3) * Range(-0.7, 0.3)
+        assertTrue(BigDecimal(prod.min) <= BigDecimal(0.3) * BigDecimal(-0.7))
+        assertTrue(BigDecimal(prod.max) >= BigDecimal(0.3) * BigDecimal(0.3))
+        assertTrue((Range(1.5) * Range(2.0) - Range(0.5)).isScalar())
+        assertEquals(Range(-4.0, 2.0), a * Range(-2.0, 0.0) - Range(0.0))
+        assertTrue((Range.Reals + Range(1.0)).isReals())
+        assertTrue((Range.Empty + a).isEmpty())
+    }
+
     @Test
     fun RangeTst() {
         Leaf(1.0 .. 2.0)